@@ -3,6 +3,7 @@ package com.damianogiusti.okrxwebsocketapp;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 
+import com.damianogiusti.okrxwebsocket.parser.OkRxWebSocketGsonParser;
 import com.damianogiusti.okrxwebsocket.websocket.OkRxWebSocket;
 import com.damianogiusti.okrxwebsocket.websocket.OkRxWebSocketActivity;
 import com.damianogiusti.okrxwebsocket.websocket.OkRxWebSocketMessage;
@@ -39,7 +40,7 @@ public class MainActivity extends AppCompatActivity {
                 .byteCharsetEncoding(Charset.forName("UTF-8"))
                 .enableLogging()
                 .loggerProvider(new TimberLoggerProvider())
-                .responseParser(new GsonResponseParser())
+                .responseParser(new OkRxWebSocketGsonParser())
                 .build();
 
         // observe incoming messages
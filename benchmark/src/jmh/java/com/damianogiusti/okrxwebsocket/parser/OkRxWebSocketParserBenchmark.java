@@ -0,0 +1,86 @@
+package com.damianogiusti.okrxwebsocket.parser;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okio.ByteString;
+
+/**
+ * Measures the throughput of {@link OkRxWebSocketGsonParser} on text and binary messages,
+ * against plain {@link Gson} parsing of the same payload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OkRxWebSocketParserBenchmark {
+
+    public static class Tick {
+        String symbol;
+        double bid;
+        double ask;
+        long timestamp;
+    }
+
+    public static class Snapshot {
+        List<Tick> ticks;
+    }
+
+    @Param({"1", "1000"})
+    int ticks;
+
+    private final Gson gson = new Gson();
+    private final OkRxWebSocketGsonParser parser = new OkRxWebSocketGsonParser(gson);
+    private String text;
+    private byte[] bytes;
+    private ByteString byteString;
+
+    @Setup
+    public void setUp() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.ticks = new ArrayList<>();
+        for (int i = 0; i < ticks; i++) {
+            Tick tick = new Tick();
+            tick.symbol = "SYM" + i;
+            tick.bid = i;
+            tick.ask = i + 0.5;
+            tick.timestamp = System.currentTimeMillis();
+            snapshot.ticks.add(tick);
+        }
+        text = gson.toJson(snapshot);
+        byteString = ByteString.encodeString(text, Charset.forName("UTF-8"));
+        bytes = byteString.toByteArray();
+    }
+
+    @Benchmark
+    public Snapshot gsonFromString() {
+        return gson.fromJson(text, Snapshot.class);
+    }
+
+    @Benchmark
+    public Snapshot parseString() {
+        return parser.parseResponse(Snapshot.class, text);
+    }
+
+    @Benchmark
+    public Snapshot parseBytes() {
+        return parser.parseResponse(Snapshot.class, bytes);
+    }
+
+    @Benchmark
+    public Snapshot parseByteString() {
+        return parser.parseResponse(Snapshot.class, byteString);
+    }
+}
@@ -0,0 +1,103 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.ByteString;
+import rx.Subscription;
+import rx.functions.Action1;
+
+/**
+ * Local WebSocket server used by the benchmarks.<br/>
+ * Text messages are echoed back, except:
+ * <ul>
+ * <li>{@code burst:<count>:<size>}, answered with count messages of the given size</li>
+ * <li>messages starting with {@code noreply|}, which are never answered</li>
+ * </ul>
+ * Binary messages are always echoed back.
+ */
+final class BenchmarkServer {
+
+    static final String BURST_PREFIX = "burst:";
+    static final String NO_REPLY_PREFIX = "noreply|";
+
+    private final MockWebServer server = new MockWebServer();
+    private final OkHttpClient client = new OkHttpClient();
+
+    void start() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().withWebSocketUpgrade(new WebSocketListener() {
+                    @Override
+                    public void onMessage(WebSocket webSocket, String text) {
+                        if (text.startsWith(BURST_PREFIX)) {
+                            String[] parts = text.split(":");
+                            int count = Integer.parseInt(parts[1]);
+                            ByteString payload = ByteString.of(new byte[Integer.parseInt(parts[2])]);
+                            for (int i = 0; i < count; i++) {
+                                webSocket.send(payload);
+                            }
+                        } else if (!text.startsWith(NO_REPLY_PREFIX)) {
+                            webSocket.send(text);
+                        }
+                    }
+
+                    @Override
+                    public void onMessage(WebSocket webSocket, ByteString bytes) {
+                        webSocket.send(bytes);
+                    }
+
+                    @Override
+                    public void onClosing(WebSocket webSocket, int code, String reason) {
+                        webSocket.close(code, reason);
+                    }
+                });
+            }
+        });
+        server.start();
+    }
+
+    OkRxWebSocket.Builder newSocketBuilder() {
+        String url = server.url("/").toString().replaceFirst("^http", "ws");
+        return new OkRxWebSocket.Builder(client).url(url);
+    }
+
+    /**
+     * Opens the given socket, waiting for the connection to be established.
+     *
+     * @return the subscription keeping the socket open
+     */
+    static Subscription open(OkRxWebSocket socket) throws InterruptedException {
+        final CountDownLatch opened = new CountDownLatch(1);
+        socket.on(OkRxWebSocketState.OPENED).first().subscribe(new Action1<OkRxWebSocketState>() {
+            @Override
+            public void call(OkRxWebSocketState state) {
+                opened.countDown();
+            }
+        });
+        Subscription subscription = socket.open().subscribe();
+        if (!opened.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Unable to open the benchmark socket");
+        }
+        return subscription;
+    }
+
+    /**
+     * Closes the given socket, then stops the server and the client threads, so that the benchmark VM can exit.
+     */
+    void shutdown(OkRxWebSocket socket) throws IOException {
+        socket.close().await(10, TimeUnit.SECONDS);
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        server.shutdown();
+    }
+}
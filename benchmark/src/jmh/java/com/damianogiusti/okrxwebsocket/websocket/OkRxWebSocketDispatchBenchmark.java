@@ -0,0 +1,83 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import rx.Subscription;
+import rx.functions.Action1;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * Measures the delivery of bursts of incoming frames to the subscribers of
+ * {@link OkRxWebSocket#observeSocketMessages()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OkRxWebSocketDispatchBenchmark {
+
+    @Param({"1000"})
+    int framesPerBurst;
+
+    @Param({"64", "4096"})
+    int frameSize;
+
+    @Param({"1", "8"})
+    int subscribers;
+
+    private BenchmarkServer server;
+    private OkRxWebSocket socket;
+    private Subscription openSubscription;
+    private Subscription messagesSubscription;
+    private String burstRequest;
+    private volatile CountDownLatch pendingFrames;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new BenchmarkServer();
+        server.start();
+        socket = server.newSocketBuilder().build();
+        CompositeSubscription composite = new CompositeSubscription();
+        for (int i = 0; i < subscribers; i++) {
+            final boolean counting = i == 0;
+            composite.add(socket.observeSocketMessages().subscribe(new Action1<OkRxWebSocketMessage>() {
+                @Override
+                public void call(OkRxWebSocketMessage message) {
+                    if (counting) {
+                        pendingFrames.countDown();
+                    }
+                }
+            }));
+        }
+        messagesSubscription = composite;
+        openSubscription = BenchmarkServer.open(socket);
+        burstRequest = BenchmarkServer.BURST_PREFIX + framesPerBurst + ":" + frameSize;
+    }
+
+    @Benchmark
+    public void dispatchBurst() throws InterruptedException {
+        pendingFrames = new CountDownLatch(framesPerBurst);
+        socket.send(burstRequest).await();
+        if (!pendingFrames.await(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Burst not received");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        messagesSubscription.unsubscribe();
+        server.shutdown(socket);
+        openSubscription.unsubscribe();
+    }
+}
@@ -0,0 +1,72 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okio.ByteString;
+
+/**
+ * Measures the cost of wrapping incoming frames into {@link OkRxWebSocketMessage}s,
+ * and of reading their payload in each form.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OkRxWebSocketMessageBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"64", "1024", "65536"})
+    int payloadSize;
+
+    private String text;
+    private ByteString binary;
+
+    @Setup
+    public void setUp() {
+        char[] chars = new char[payloadSize];
+        Arrays.fill(chars, 'a');
+        text = new String(chars);
+        binary = ByteString.encodeString(text, UTF_8);
+    }
+
+    @Benchmark
+    public OkRxWebSocketMessage createText() {
+        return OkRxWebSocketMessage.createForNewMessage(UTF_8, text);
+    }
+
+    @Benchmark
+    public OkRxWebSocketMessage createBinary() {
+        return OkRxWebSocketMessage.createForNewMessage(UTF_8, binary);
+    }
+
+    @Benchmark
+    public String readTextAsString() {
+        return OkRxWebSocketMessage.createForNewMessage(UTF_8, text).getResponseString();
+    }
+
+    @Benchmark
+    public byte[] readTextAsBytes() {
+        return OkRxWebSocketMessage.createForNewMessage(UTF_8, text).getResponseByte();
+    }
+
+    @Benchmark
+    public String readBinaryAsString() {
+        return OkRxWebSocketMessage.createForNewMessage(UTF_8, binary).getResponseString();
+    }
+
+    @Benchmark
+    public byte[] readBinaryAsBytes() {
+        return OkRxWebSocketMessage.createForNewMessage(UTF_8, binary).getResponseByte();
+    }
+}
@@ -0,0 +1,121 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Subscription;
+import rx.functions.Func1;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * Measures request/response round trips while a number of other requests are still waiting
+ * for a response, comparing response matchers with correlation keys.<br/>
+ * Each benchmark keeps only its own kind of requests pending, so that the correlated round trip
+ * does not pay for the matchers of the other one.<br/>
+ * Requests are text messages in the form {@code <id>:<payload>}, answered with the same message.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OkRxWebSocketRoundTripBenchmark {
+
+    private static final Func1<OkRxWebSocketMessage, String> CORRELATION_KEY_EXTRACTOR = new Func1<OkRxWebSocketMessage, String>() {
+        @Override
+        public String call(OkRxWebSocketMessage message) {
+            String response = message.getResponseString();
+            int separator = response.indexOf(':');
+            return separator > 0 ? response.substring(0, separator) : null;
+        }
+    };
+
+    @State(Scope.Benchmark)
+    public abstract static class SocketState {
+
+        @Param({"0", "100", "1000"})
+        int pendingRequests;
+
+        OkRxWebSocket socket;
+        final AtomicLong ids = new AtomicLong();
+        private BenchmarkServer server;
+        private Subscription openSubscription;
+        private CompositeSubscription pendingSubscriptions;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            server = new BenchmarkServer();
+            server.start();
+            socket = server.newSocketBuilder()
+                    .correlationKeyExtractor(CORRELATION_KEY_EXTRACTOR)
+                    .build();
+            openSubscription = BenchmarkServer.open(socket);
+
+            // requests never answered by the server, which stay pending for the whole trial
+            pendingSubscriptions = new CompositeSubscription();
+            for (int i = 0; i < pendingRequests; i++) {
+                pendingSubscriptions.add(sendPending("pending-" + i));
+            }
+        }
+
+        /**
+         * Sends a request which is never answered, waiting for the response with the given key.
+         */
+        abstract Subscription sendPending(String key);
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            pendingSubscriptions.unsubscribe();
+            server.shutdown(socket);
+            openSubscription.unsubscribe();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class MatcherState extends SocketState {
+
+        @Override
+        Subscription sendPending(final String key) {
+            return socket.send(BenchmarkServer.NO_REPLY_PREFIX + key, new Func1<OkRxWebSocketMessage, Boolean>() {
+                @Override
+                public Boolean call(OkRxWebSocketMessage message) {
+                    return message.getResponseString().startsWith(key + ":");
+                }
+            }).subscribe();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CorrelatedState extends SocketState {
+
+        @Override
+        Subscription sendPending(String key) {
+            return socket.send(BenchmarkServer.NO_REPLY_PREFIX + key, key).subscribe();
+        }
+    }
+
+    @Benchmark
+    public OkRxWebSocketMessage matcherRoundTrip(MatcherState state) {
+        final String prefix = state.ids.incrementAndGet() + ":";
+        return state.socket.send(prefix + "ping", new Func1<OkRxWebSocketMessage, Boolean>() {
+            @Override
+            public Boolean call(OkRxWebSocketMessage message) {
+                return message.getResponseString().startsWith(prefix);
+            }
+        }).toBlocking().first();
+    }
+
+    @Benchmark
+    public OkRxWebSocketMessage correlatedRoundTrip(CorrelatedState state) {
+        String id = String.valueOf(state.ids.incrementAndGet());
+        return state.socket.send(id + ":ping", id).toBlocking().first();
+    }
+}
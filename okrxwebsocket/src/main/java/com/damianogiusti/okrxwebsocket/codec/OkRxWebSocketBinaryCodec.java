@@ -0,0 +1,148 @@
+package com.damianogiusti.okrxwebsocket.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * Compact binary {@link OkRxWebSocketCodec}: integers are written as varints, and strings and byte arrays
+ * are prefixed by their length, with no field names or separators.<br/>
+ * Subclasses write and read the fields of their type in the same order.
+ */
+public abstract class OkRxWebSocketBinaryCodec<T> implements OkRxWebSocketCodec<T> {
+
+    protected abstract void write(T value, Writer writer);
+
+    protected abstract T read(Reader reader) throws IOException;
+
+    @Override
+    public final ByteString encode(T value) {
+        Buffer buffer = new Buffer();
+        write(value, new Writer(buffer));
+        return buffer.readByteString();
+    }
+
+    @Override
+    public final T decode(ByteString bytes) {
+        Reader reader = new Reader(bytes);
+        try {
+            T value = read(reader);
+            if (reader.position != bytes.size()) {
+                throw new IllegalArgumentException("Malformed message: " + (bytes.size() - reader.position) + " trailing bytes");
+            }
+            return value;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed message: " + e.getMessage(), e);
+        }
+    }
+
+    public static final class Writer {
+
+        private final Buffer buffer;
+
+        Writer(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Writes a non-negative integer in 1 to 10 bytes, 7 bits each.
+         */
+        public Writer writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.writeByte((int) value);
+            return this;
+        }
+
+        /**
+         * Writes an integer which can be negative, zig-zag encoded so that small values take few bytes.
+         */
+        public Writer writeSignedVarint(long value) {
+            return writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        public Writer writeBoolean(boolean value) {
+            buffer.writeByte(value ? 1 : 0);
+            return this;
+        }
+
+        public Writer writeDouble(double value) {
+            buffer.writeLong(Double.doubleToLongBits(value));
+            return this;
+        }
+
+        public Writer writeString(String value) {
+            return writeBytes(ByteString.encodeUtf8(value));
+        }
+
+        public Writer writeBytes(ByteString value) {
+            writeVarint(value.size());
+            buffer.write(value);
+            return this;
+        }
+    }
+
+    public static final class Reader {
+
+        private final ByteString bytes;
+        private int position;
+
+        Reader(ByteString bytes) {
+            this.bytes = bytes;
+        }
+
+        public long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Varint too long");
+        }
+
+        public long readSignedVarint() throws IOException {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        public boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        public double readDouble() throws IOException {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | (readByte() & 0xFF);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        public String readString() throws IOException {
+            return readBytes().utf8();
+        }
+
+        public ByteString readBytes() throws IOException {
+            long size = readVarint();
+            if (size < 0 || size > bytes.size() - position) {
+                throw new EOFException("Length " + size + " exceeds the message");
+            }
+            ByteString value = bytes.substring(position, position + (int) size);
+            position += (int) size;
+            return value;
+        }
+
+        private byte readByte() throws EOFException {
+            if (position >= bytes.size()) {
+                throw new EOFException("Unexpected end of message");
+            }
+            return bytes.getByte(position++);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.damianogiusti.okrxwebsocket.codec;
+
+import okio.ByteString;
+
+/**
+ * Converts the values of a type to and from binary messages.
+ */
+public interface OkRxWebSocketCodec<T> {
+
+    ByteString encode(T value);
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a valid encoding of the type
+     */
+    T decode(ByteString bytes);
+}
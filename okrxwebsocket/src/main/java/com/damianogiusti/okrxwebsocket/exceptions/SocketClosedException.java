@@ -0,0 +1,15 @@
+package com.damianogiusti.okrxwebsocket.exceptions;
+
+/**
+ * Signals that a request was still waiting for its response when the socket was closed or failed.
+ */
+public class SocketClosedException extends RuntimeException {
+
+    public SocketClosedException(String message) {
+        super(message);
+    }
+
+    public SocketClosedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
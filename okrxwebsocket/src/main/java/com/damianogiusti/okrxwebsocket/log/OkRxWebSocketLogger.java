@@ -1,5 +1,7 @@
 package com.damianogiusti.okrxwebsocket.log;
 
+import okio.ByteString;
+
 /**
  * Created by Damiano Giusti on 14/05/17.
  */
@@ -7,6 +9,7 @@ public class OkRxWebSocketLogger implements Logger {
 
     private boolean isEnabled;
     private OkRxWebSocketLoggerProvider loggerProvider;
+    private int maxPayloadPreviewLength = -1; // unlimited
 
     public OkRxWebSocketLogger(boolean isEnabled) {
         this.isEnabled = isEnabled;
@@ -21,13 +24,90 @@ public class OkRxWebSocketLogger implements Logger {
         isEnabled = enabled;
     }
 
+    /**
+     * Sets the maximum length of the payloads logged by the debugPayload methods, or -1 to log them entirely.
+     */
+    public void setMaxPayloadPreviewLength(int maxPayloadPreviewLength) {
+        this.maxPayloadPreviewLength = maxPayloadPreviewLength;
+    }
+
+    /**
+     * @return true if the debug messages are logged, to skip building the expensive ones otherwise
+     */
+    public boolean isDebugEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Logs the given message followed by a preview of the payload.<br/>
+     * Nothing is allocated when debug logging is disabled.
+     */
+    public void debugPayload(String tag, String message, String payload) {
+        if (isDebugEnabled()) {
+            if (maxPayloadPreviewLength >= 0 && payload.length() > maxPayloadPreviewLength) {
+                loggerProvider.debug(tag, message + payload.substring(0, maxPayloadPreviewLength)
+                        + "... (" + payload.length() + " chars)");
+            } else {
+                loggerProvider.debug(tag, message + payload);
+            }
+        }
+    }
+
+    /**
+     * Logs the given message followed by a base64 preview of the binary payload.<br/>
+     * Nothing is allocated when debug logging is disabled.
+     */
+    public void debugPayload(String tag, String message, ByteString payload) {
+        if (isDebugEnabled()) {
+            if (maxPayloadPreviewLength >= 0 && payload.size() > maxPayloadPreviewLength) {
+                loggerProvider.debug(tag, message + payload.substring(0, maxPayloadPreviewLength).base64()
+                        + "... (" + payload.size() + " bytes)");
+            } else {
+                loggerProvider.debug(tag, message + payload.base64());
+            }
+        }
+    }
+
     @Override
     public void debug(String tag, String message) {
-        if (isEnabled) {
+        if (isDebugEnabled()) {
             loggerProvider.debug(tag, message);
         }
     }
 
+    /**
+     * Logs the message produced by {@link String#format(String, Object...)} with the given argument.<br/>
+     * Formatting happens only when debug logging is enabled, and the argument is not boxed until then.
+     */
+    public void debug(String tag, String format, long arg) {
+        if (isDebugEnabled()) {
+            loggerProvider.debug(tag, String.format(format, arg));
+        }
+    }
+
+    public void debug(String tag, String format, Object arg) {
+        if (isDebugEnabled()) {
+            loggerProvider.debug(tag, String.format(format, arg));
+        }
+    }
+
+    public void debug(String tag, String format, Object arg1, Object arg2) {
+        if (isDebugEnabled()) {
+            loggerProvider.debug(tag, String.format(format, arg1, arg2));
+        }
+    }
+
+    /**
+     * Logs the message produced by {@link String#format(String, Object...)} with the given arguments.<br/>
+     * Formatting happens only when debug logging is enabled. Prefer the overloads with fewer arguments,
+     * which do not allocate the arguments array, on frequent paths.
+     */
+    public void debug(String tag, String format, Object... args) {
+        if (isDebugEnabled()) {
+            loggerProvider.debug(tag, String.format(format, args));
+        }
+    }
+
     @Override
     public void info(String tag, String message) {
         if (isEnabled) {
@@ -42,10 +122,74 @@ public class OkRxWebSocketLogger implements Logger {
         }
     }
 
+    /**
+     * Logs the message produced by {@link String#format(String, Object...)} with the given argument.<br/>
+     * Formatting happens only when logging is enabled, and the argument is not boxed until then.
+     */
+    public void warn(String tag, String format, long arg) {
+        if (isEnabled) {
+            loggerProvider.warn(tag, String.format(format, arg));
+        }
+    }
+
+    public void warn(String tag, String format, Object arg) {
+        if (isEnabled) {
+            loggerProvider.warn(tag, String.format(format, arg));
+        }
+    }
+
+    public void warn(String tag, String format, Object arg1, Object arg2) {
+        if (isEnabled) {
+            loggerProvider.warn(tag, String.format(format, arg1, arg2));
+        }
+    }
+
+    /**
+     * Logs the message produced by {@link String#format(String, Object...)} with the given arguments.<br/>
+     * Formatting happens only when logging is enabled.
+     */
+    public void warn(String tag, String format, Object... args) {
+        if (isEnabled) {
+            loggerProvider.warn(tag, String.format(format, args));
+        }
+    }
+
     @Override
     public void error(String tag, String message, Throwable throwable) {
         if (isEnabled) {
             loggerProvider.error(tag, message, throwable);
         }
     }
+
+    /**
+     * Logs the message produced by {@link String#format(String, Object...)} with the given argument.<br/>
+     * Formatting happens only when logging is enabled, and the argument is not boxed until then.
+     */
+    public void error(String tag, Throwable throwable, String format, long arg) {
+        if (isEnabled) {
+            loggerProvider.error(tag, String.format(format, arg), throwable);
+        }
+    }
+
+    public void error(String tag, Throwable throwable, String format, Object arg) {
+        if (isEnabled) {
+            loggerProvider.error(tag, String.format(format, arg), throwable);
+        }
+    }
+
+    public void error(String tag, Throwable throwable, String format, Object arg1, Object arg2) {
+        if (isEnabled) {
+            loggerProvider.error(tag, String.format(format, arg1, arg2), throwable);
+        }
+    }
+
+    /**
+     * Logs the message produced by {@link String#format(String, Object...)} with the given arguments.<br/>
+     * Formatting happens only when logging is enabled.
+     */
+    public void error(String tag, Throwable throwable, String format, Object... args) {
+        if (isEnabled) {
+            loggerProvider.error(tag, String.format(format, args), throwable);
+        }
+    }
 }
@@ -0,0 +1,9 @@
+package com.damianogiusti.okrxwebsocket.metrics;
+
+/**
+ * Value sampled when metrics are read, instead of being updated on every change.
+ */
+public interface OkRxWebSocketGauge {
+
+    long getValue();
+}
@@ -0,0 +1,104 @@
+package com.damianogiusti.okrxwebsocket.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations, with power-of-two buckets: recording is a couple of atomic increments,
+ * while percentiles are approximated by the upper bound of their bucket.
+ */
+public final class OkRxWebSocketHistogram {
+
+    private static final int BUCKETS = 64;
+
+    // bucket i holds the values in [2^(i-1), 2^i)
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value)));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax;
+        while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+            // retry
+        }
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        long maxValue = max.get();
+        return new Snapshot(count.get(), sum.get(), maxValue,
+                percentile(counts, total, 0.50, maxValue),
+                percentile(counts, total, 0.99, maxValue));
+    }
+
+    private static long percentile(long[] counts, long total, double percentile, long maxValue) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long upperBound = i == 0 ? 0 : (1L << i) - 1;
+                return Math.min(upperBound, maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    public static final class Snapshot {
+
+        private final long count;
+        private final long sumNanos;
+        private final long maxNanos;
+        private final long p50Nanos;
+        private final long p99Nanos;
+
+        Snapshot(long count, long sumNanos, long maxNanos, long p50Nanos, long p99Nanos) {
+            this.count = count;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMean(TimeUnit unit) {
+            return count == 0 ? 0 : unit.convert(sumNanos / count, TimeUnit.NANOSECONDS);
+        }
+
+        public long getMax(TimeUnit unit) {
+            return unit.convert(maxNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public long getP50(TimeUnit unit) {
+            return unit.convert(p50Nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public long getP99(TimeUnit unit) {
+            return unit.convert(p99Nanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count %d, mean %d us, p50 %d us, p99 %d us, max %d us", count,
+                    getMean(TimeUnit.MICROSECONDS), getP50(TimeUnit.MICROSECONDS),
+                    getP99(TimeUnit.MICROSECONDS), getMax(TimeUnit.MICROSECONDS));
+        }
+    }
+}
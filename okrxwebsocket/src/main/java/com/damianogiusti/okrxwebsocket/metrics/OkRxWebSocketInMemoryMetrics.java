@@ -0,0 +1,98 @@
+package com.damianogiusti.okrxwebsocket.metrics;
+
+import com.damianogiusti.okrxwebsocket.websocket.OkRxWebSocketState;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default {@link OkRxWebSocketMetrics}, keeping the measurements in memory until a {@link #snapshot()} is taken.
+ * Gauges registered with the same name by several sockets are added together.
+ */
+public final class OkRxWebSocketInMemoryMetrics implements OkRxWebSocketMetrics {
+
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final OkRxWebSocketHistogram parseTimes = new OkRxWebSocketHistogram();
+    private final OkRxWebSocketHistogram deliveryTimes = new OkRxWebSocketHistogram();
+    private final Map<OkRxWebSocketState, AtomicLong> stateDurations = new EnumMap<>(OkRxWebSocketState.class);
+    private final ConcurrentMap<String, List<OkRxWebSocketGauge>> gauges = new ConcurrentHashMap<>();
+
+    public OkRxWebSocketInMemoryMetrics() {
+        for (OkRxWebSocketState state : OkRxWebSocketState.values()) {
+            stateDurations.put(state, new AtomicLong());
+        }
+    }
+
+    @Override
+    public void registerGauge(String name, OkRxWebSocketGauge gauge) {
+        List<OkRxWebSocketGauge> namedGauges = gauges.get(name);
+        if (namedGauges == null) {
+            namedGauges = new CopyOnWriteArrayList<>();
+            List<OkRxWebSocketGauge> previous = gauges.putIfAbsent(name, namedGauges);
+            if (previous != null) {
+                namedGauges = previous;
+            }
+        }
+        namedGauges.add(gauge);
+    }
+
+    @Override
+    public void onFrameReceived(long bytes) {
+        framesReceived.incrementAndGet();
+        bytesReceived.addAndGet(bytes);
+    }
+
+    @Override
+    public void onFrameSent(long bytes) {
+        framesSent.incrementAndGet();
+        bytesSent.addAndGet(bytes);
+    }
+
+    @Override
+    public void onMessageParsed(long nanos) {
+        parseTimes.record(nanos);
+    }
+
+    @Override
+    public void onMessageDelivered(long nanos) {
+        deliveryTimes.record(nanos);
+    }
+
+    @Override
+    public void onReconnect() {
+        reconnects.incrementAndGet();
+    }
+
+    @Override
+    public void onStateExited(OkRxWebSocketState state, long durationNanos) {
+        stateDurations.get(state).addAndGet(durationNanos);
+    }
+
+    public OkRxWebSocketMetricsSnapshot snapshot() {
+        Map<String, Long> gaugeValues = new LinkedHashMap<>();
+        for (Map.Entry<String, List<OkRxWebSocketGauge>> entry : gauges.entrySet()) {
+            long value = 0;
+            for (OkRxWebSocketGauge gauge : entry.getValue()) {
+                value += gauge.getValue();
+            }
+            gaugeValues.put(entry.getKey(), value);
+        }
+        Map<OkRxWebSocketState, Long> durations = new EnumMap<>(OkRxWebSocketState.class);
+        for (Map.Entry<OkRxWebSocketState, AtomicLong> entry : stateDurations.entrySet()) {
+            durations.put(entry.getKey(), entry.getValue().get());
+        }
+        return new OkRxWebSocketMetricsSnapshot(framesReceived.get(), bytesReceived.get(),
+                framesSent.get(), bytesSent.get(), reconnects.get(),
+                parseTimes.snapshot(), deliveryTimes.snapshot(), durations, gaugeValues);
+    }
+}
@@ -0,0 +1,52 @@
+package com.damianogiusti.okrxwebsocket.metrics;
+
+import com.damianogiusti.okrxwebsocket.websocket.OkRxWebSocketState;
+
+/**
+ * Receives the measurements of a {@link com.damianogiusti.okrxwebsocket.websocket.OkRxWebSocket}.<br/>
+ * Methods are called on the hot paths of the socket, from several threads: implementations must be
+ * thread safe and must not block.
+ */
+public interface OkRxWebSocketMetrics {
+
+    /**
+     * Size in bytes of the messages enqueued by the WebSocket and not yet transmitted.
+     */
+    String GAUGE_QUEUE_SIZE = "queueSize";
+
+    /**
+     * Number of requests waiting for their response, correlated or matched.
+     */
+    String GAUGE_PENDING_REQUESTS = "pendingRequests";
+
+    /**
+     * Registers a gauge of a socket. Sockets sharing the same metrics, like the ones of a pool, each register
+     * their own gauge with the same name: implementations must keep all of them, e.g. adding their values.
+     */
+    void registerGauge(String name, OkRxWebSocketGauge gauge);
+
+    void onFrameReceived(long bytes);
+
+    /**
+     * Called once for every frame written into the WebSocket, after batching.
+     */
+    void onFrameSent(long bytes);
+
+    /**
+     * @param nanos time spent parsing a message into a response type
+     */
+    void onMessageParsed(long nanos);
+
+    /**
+     * @param nanos time between the arrival of a frame and its delivery to a subscriber
+     */
+    void onMessageDelivered(long nanos);
+
+    void onReconnect();
+
+    /**
+     * @param state         state the socket has just left
+     * @param durationNanos time spent in that state
+     */
+    void onStateExited(OkRxWebSocketState state, long durationNanos);
+}
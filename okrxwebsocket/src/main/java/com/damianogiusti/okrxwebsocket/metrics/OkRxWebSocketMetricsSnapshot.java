@@ -0,0 +1,105 @@
+package com.damianogiusti.okrxwebsocket.metrics;
+
+import com.damianogiusti.okrxwebsocket.websocket.OkRxWebSocketState;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measurements of {@link OkRxWebSocketInMemoryMetrics} at a given instant.
+ */
+public final class OkRxWebSocketMetricsSnapshot {
+
+    private final long framesReceived;
+    private final long bytesReceived;
+    private final long framesSent;
+    private final long bytesSent;
+    private final long reconnects;
+    private final OkRxWebSocketHistogram.Snapshot parseTimes;
+    private final OkRxWebSocketHistogram.Snapshot deliveryTimes;
+    private final Map<OkRxWebSocketState, Long> stateDurations;
+    private final Map<String, Long> gauges;
+
+    OkRxWebSocketMetricsSnapshot(long framesReceived, long bytesReceived, long framesSent, long bytesSent,
+                                 long reconnects, OkRxWebSocketHistogram.Snapshot parseTimes,
+                                 OkRxWebSocketHistogram.Snapshot deliveryTimes,
+                                 Map<OkRxWebSocketState, Long> stateDurations, Map<String, Long> gauges) {
+        this.framesReceived = framesReceived;
+        this.bytesReceived = bytesReceived;
+        this.framesSent = framesSent;
+        this.bytesSent = bytesSent;
+        this.reconnects = reconnects;
+        this.parseTimes = parseTimes;
+        this.deliveryTimes = deliveryTimes;
+        this.stateDurations = Collections.unmodifiableMap(stateDurations);
+        this.gauges = Collections.unmodifiableMap(gauges);
+    }
+
+    public long getFramesReceived() {
+        return framesReceived;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getReconnects() {
+        return reconnects;
+    }
+
+    public OkRxWebSocketHistogram.Snapshot getParseTimes() {
+        return parseTimes;
+    }
+
+    public OkRxWebSocketHistogram.Snapshot getDeliveryTimes() {
+        return deliveryTimes;
+    }
+
+    /**
+     * @return the total time spent in the given state, excluding the current one
+     */
+    public long getStateDuration(OkRxWebSocketState state, TimeUnit unit) {
+        Long duration = stateDurations.get(state);
+        return unit.convert(duration != null ? duration : 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the value of the gauge with the given name, or -1 if no such gauge is registered
+     */
+    public long getGauge(String name) {
+        Long value = gauges.get(name);
+        return value != null ? value : -1;
+    }
+
+    public long getQueueSize() {
+        return getGauge(OkRxWebSocketMetrics.GAUGE_QUEUE_SIZE);
+    }
+
+    public long getPendingRequests() {
+        return getGauge(OkRxWebSocketMetrics.GAUGE_PENDING_REQUESTS);
+    }
+
+    @Override
+    public String toString() {
+        return "OkRxWebSocketMetricsSnapshot{" +
+                "framesReceived=" + framesReceived +
+                ", bytesReceived=" + bytesReceived +
+                ", framesSent=" + framesSent +
+                ", bytesSent=" + bytesSent +
+                ", reconnects=" + reconnects +
+                ", parseTimes=[" + parseTimes + ']' +
+                ", deliveryTimes=[" + deliveryTimes + ']' +
+                ", stateDurations=" + stateDurations +
+                ", gauges=" + gauges +
+                '}';
+    }
+}
@@ -0,0 +1,164 @@
+package com.damianogiusti.okrxwebsocket.parser;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * {@link OkRxWebSocketStreamingParser} backed by Gson, which reads binary messages
+ * with a {@link JsonReader} directly over the frame bytes.<br/>
+ * The {@link TypeAdapter} of each type is resolved once and cached. Adapters registered with
+ * {@link #registerTypeAdapter(Type, TypeAdapter)}, e.g. generated ones, are used instead of reflection.
+ */
+public class OkRxWebSocketGsonParser implements OkRxWebSocketStreamingParser, OkRxWebSocketTypeParser {
+
+    private final Gson gson;
+    private final Charset charset;
+    private final ConcurrentMap<Type, TypeAdapter<?>> typeAdapters = new ConcurrentHashMap<>();
+
+    public OkRxWebSocketGsonParser() {
+        this(new Gson());
+    }
+
+    public OkRxWebSocketGsonParser(Gson gson) {
+        this(gson, Charset.forName("UTF-8"));
+    }
+
+    public OkRxWebSocketGsonParser(Gson gson, Charset charset) {
+        this.gson = gson;
+        this.charset = charset;
+    }
+
+    /**
+     * Registers the adapter used to parse the given type, replacing the one Gson would resolve by reflection.
+     */
+    public <T> OkRxWebSocketGsonParser registerTypeAdapter(Type type, TypeAdapter<T> typeAdapter) {
+        typeAdapters.put(type, typeAdapter);
+        return this;
+    }
+
+    @Override
+    public <T> T parseResponse(Class<T> type, String response) {
+        return parseResponse((Type) type, response);
+    }
+
+    @Override
+    public <T> T parseResponse(Class<T> type, byte[] response) {
+        return parse(type, new InputStreamReader(new ByteArrayInputStream(response), charset));
+    }
+
+    @Override
+    public <T> T parseResponse(Class<T> type, ByteString response) {
+        return parseResponse((Type) type, response);
+    }
+
+    @Override
+    public <T> T parseResponse(Class<T> type, BufferedSource response) {
+        return parse(type, new InputStreamReader(response.inputStream(), charset));
+    }
+
+    @Override
+    public <T> T parseResponse(Type type, String response) {
+        return parse(type, new StringReader(response));
+    }
+
+    @Override
+    public <T> T parseResponse(Type type, ByteString response) {
+        return parse(type, new InputStreamReader(new ByteBufferInputStream(response.asByteBuffer()), charset));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> TypeAdapter<T> getTypeAdapter(Type type) {
+        TypeAdapter<?> typeAdapter = typeAdapters.get(type);
+        if (typeAdapter == null) {
+            typeAdapter = gson.getAdapter(TypeToken.get(type));
+            TypeAdapter<?> previous = typeAdapters.putIfAbsent(type, typeAdapter);
+            if (previous != null) {
+                typeAdapter = previous;
+            }
+        }
+        return (TypeAdapter<T>) typeAdapter;
+    }
+
+    private <T> T parse(Type type, Reader reader) {
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(true); // same as Gson.fromJson
+        boolean isEmpty = true;
+        try {
+            jsonReader.peek();
+            isEmpty = false;
+            T value = this.<T>getTypeAdapter(type).read(jsonReader);
+            if (value != null && jsonReader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonSyntaxException("JSON document was not fully consumed.");
+            }
+            return value;
+        } catch (EOFException e) {
+            if (isEmpty) {
+                return null;
+            }
+            throw new JsonSyntaxException(e);
+        } catch (IllegalStateException | MalformedJsonException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        } finally {
+            try {
+                jsonReader.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Reads a {@link ByteBuffer} view of a frame, so that its bytes are never copied.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
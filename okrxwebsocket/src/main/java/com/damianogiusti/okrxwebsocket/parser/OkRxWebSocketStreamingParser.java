@@ -0,0 +1,15 @@
+package com.damianogiusti.okrxwebsocket.parser;
+
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * Parser able to decode messages directly from their bytes, without materializing them
+ * into a {@link String} or a copied byte array first.
+ */
+public interface OkRxWebSocketStreamingParser extends OkRxWebSocketParser {
+
+    <T> T parseResponse(Class<T> type, ByteString response);
+
+    <T> T parseResponse(Class<T> type, BufferedSource response);
+}
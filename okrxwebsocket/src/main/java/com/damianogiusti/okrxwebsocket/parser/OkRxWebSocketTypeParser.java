@@ -0,0 +1,15 @@
+package com.damianogiusti.okrxwebsocket.parser;
+
+import java.lang.reflect.Type;
+
+import okio.ByteString;
+
+/**
+ * Parser able to decode messages into generic types, described by a {@link Type} instead of a {@link Class}.
+ */
+public interface OkRxWebSocketTypeParser extends OkRxWebSocketParser {
+
+    <T> T parseResponse(Type type, String response);
+
+    <T> T parseResponse(Type type, ByteString response);
+}
@@ -1,15 +1,28 @@
 package com.damianogiusti.okrxwebsocket.websocket;
 
-import android.text.TextUtils;
-
+import com.damianogiusti.okrxwebsocket.codec.OkRxWebSocketCodec;
 import com.damianogiusti.okrxwebsocket.exceptions.InvalidURLException;
 import com.damianogiusti.okrxwebsocket.exceptions.ParserNotImplementedException;
+import com.damianogiusti.okrxwebsocket.exceptions.SocketClosedException;
 import com.damianogiusti.okrxwebsocket.log.OkRxWebSocketLogger;
 import com.damianogiusti.okrxwebsocket.log.OkRxWebSocketLoggerProvider;
+import com.damianogiusti.okrxwebsocket.metrics.OkRxWebSocketGauge;
+import com.damianogiusti.okrxwebsocket.metrics.OkRxWebSocketMetrics;
 import com.damianogiusti.okrxwebsocket.parser.OkRxWebSocketParser;
+import com.damianogiusti.okrxwebsocket.parser.OkRxWebSocketTypeParser;
 
+import java.io.InputStream;
+import java.lang.reflect.Type;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -17,10 +30,18 @@ import okhttp3.Response;
 import okhttp3.WebSocket;
 import okhttp3.WebSocketListener;
 import okio.ByteString;
+import okio.Okio;
+import okio.Source;
+import okio.Utf8;
+import rx.BackpressureOverflow;
 import rx.Completable;
+import rx.CompletableSubscriber;
 import rx.Emitter;
 import rx.Observable;
 import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.exceptions.MissingBackpressureException;
 import rx.functions.Action0;
 import rx.functions.Action1;
 import rx.functions.Cancellable;
@@ -28,6 +49,7 @@ import rx.functions.Func0;
 import rx.functions.Func1;
 import rx.schedulers.Schedulers;
 import rx.subjects.PublishSubject;
+import rx.subscriptions.Subscriptions;
 
 /**
  * Created by Damiano Giusti on 14/05/17.
@@ -35,19 +57,64 @@ import rx.subjects.PublishSubject;
 public final class OkRxWebSocket {
 
     private static final String TAG = "OkRxWebSocket";
+    private static final int DEFAULT_OVERFLOW_CAPACITY = 128;
+    private static final long DEFAULT_HIGH_WATER_MARK = 1024 * 1024;
+    private static final long DEFAULT_LOW_WATER_MARK = 256 * 1024;
+    private static final long FLOW_CONTROL_POLL_INTERVAL_MILLIS = 10;
+    private static final int DEFAULT_STREAM_CHUNK_SIZE = 64 * 1024;
+    private static final int DEFAULT_RESUME_WINDOW_SIZE = 1024;
 
-    private WebSocket webSocket;
+    private volatile WebSocket webSocket;
+    private final Object webSocketLock = new Object();
     private OkHttpClient okHttpClient;
     private String url;
     private Charset charset = Charset.forName("UTF-8");
     private OkRxWebSocketLogger logger = new OkRxWebSocketLogger(false); // disabled by default
     private OkRxWebSocketParser parser;
+    private OkRxWebSocketParseFunctions parseFunctions;
 
     private Scheduler socketScheduler = Schedulers.io();
-    private PublishSubject<OkRxWebSocketActivity> socketActivitySubject = PublishSubject.create();
-    private PublishSubject<OkRxWebSocketMessage> socketMessagesSubject = PublishSubject.create();
-    private PublishSubject<OkRxWebSocketState> socketStateChangesSubject = PublishSubject.create();
-    private OkRxWebSocketState socketState = OkRxWebSocketState.CLOSED;
+    private Scheduler parseScheduler = OkRxWebSocketSchedulers.parse();
+    private final PublishSubject<OkRxWebSocketActivity> socketActivitySubject = PublishSubject.create();
+    private final PublishSubject<OkRxWebSocketMessage> socketMessagesSubject = PublishSubject.create();
+    private volatile PublishSubject<OkRxWebSocketMessage> sessionMessagesSubject = PublishSubject.create();
+    private final PublishSubject<Throwable> requestFailuresSubject = PublishSubject.create();
+    private final OkRxWebSocketStateMachine stateMachine = new OkRxWebSocketStateMachine();
+    private OkRxWebSocketResponseRouter responseRouter = new OkRxWebSocketResponseRouter();
+    private final OkRxWebSocketTopicRouter topicRouter = new OkRxWebSocketTopicRouter();
+    private OkRxWebSocketTopicProtocol topicProtocol;
+    private final OkRxWebSocketCodecRegistry codecs = new OkRxWebSocketCodecRegistry();
+    private int streamChunkSize = DEFAULT_STREAM_CHUNK_SIZE;
+    private final AtomicLong nextStreamId = new AtomicLong(new Random().nextLong());
+    private final AtomicReference<OkRxWebSocketStreamReassembler> streamReassembler = new AtomicReference<>();
+    private OkRxWebSocketOverflowStrategy overflowStrategy = OkRxWebSocketOverflowStrategy.NONE;
+    private int overflowCapacity = DEFAULT_OVERFLOW_CAPACITY;
+    private final AtomicLong droppedMessagesCount = new AtomicLong();
+    private final AtomicInteger pendingMatcherRequests = new AtomicInteger();
+    private OkRxWebSocketReconnectPolicy reconnectPolicy;
+    private volatile int reconnectAttempts;
+    private volatile boolean closeRequested;
+    private volatile Subscription reconnectSubscription;
+    private volatile Emitter<OkRxWebSocketActivity> sessionEmitter;
+    private final OkRxWebSocketOutboundQueue outboundQueue = new OkRxWebSocketOutboundQueue();
+    private Subscription flushSubscription;
+    private long highWaterMark = DEFAULT_HIGH_WATER_MARK;
+    private long lowWaterMark = DEFAULT_LOW_WATER_MARK;
+    private OkRxWebSocketHeartbeat heartbeat;
+    private OkRxWebSocketHeartbeatEngine heartbeatEngine;
+    private OkRxWebSocketMetrics metrics;
+    private OkRxWebSocketCompressor compressor;
+    private long requestTimeoutMillis;
+    private OkRxWebSocketRequestLimiter requestLimiter;
+    private OkRxWebSocketOutbox outbox;
+    private OkRxWebSocketOutboxWriter outboxWriter;
+    private OkRxWebSocketSequenceExtractor sequenceExtractor;
+    private OkRxWebSocketSequenceWindow sequenceWindow;
+    private boolean dropDuplicates;
+    private OkRxWebSocketRequestCustomizer requestCustomizer;
+    private volatile long lastSequence = OkRxWebSocketSequenceExtractor.NO_SEQUENCE;
+    private final AtomicLong duplicateMessagesCount = new AtomicLong();
+    private final PublishSubject<OkRxWebSocketSequenceGap> sequenceGapsSubject = PublishSubject.create();
 
     public static class Builder {
 
@@ -69,6 +136,15 @@ public final class OkRxWebSocket {
             return this;
         }
 
+        /**
+         * Sets the {@link Scheduler} used to parse the messages of the typed message streams.<br/>
+         * By default a shared, bounded pool of parser threads is used.
+         */
+        public Builder parseScheduler(Scheduler scheduler) {
+            instance.parseScheduler = scheduler;
+            return this;
+        }
+
         public Builder byteCharsetEncoding(Charset charset) {
             instance.charset = charset;
             return this;
@@ -79,6 +155,15 @@ public final class OkRxWebSocket {
             return this;
         }
 
+        /**
+         * Limits the logged payloads of the sent messages to the given number of characters (or bytes,
+         * for binary messages). By default payloads are logged entirely.
+         */
+        public Builder payloadPreviewLength(int maxLength) {
+            instance.logger.setMaxPayloadPreviewLength(maxLength);
+            return this;
+        }
+
         public Builder loggerProvider(OkRxWebSocketLoggerProvider loggerProvider) {
             instance.logger.setLoggerProvider(loggerProvider);
             return this;
@@ -86,13 +171,255 @@ public final class OkRxWebSocket {
 
         public Builder responseParser(OkRxWebSocketParser responseParser) {
             instance.parser = responseParser;
+            instance.parseFunctions = new OkRxWebSocketParseFunctions(responseParser);
+            return this;
+        }
+
+        /**
+         * Sets the function used to extract the correlation key from incoming messages.<br/>
+         * When set, responses to requests sent with a correlation key are delivered to their waiter
+         * with a single lookup, instead of being tested against every pending response matcher.
+         * The function should return null for messages which are not responses.
+         */
+        public Builder correlationKeyExtractor(Func1<OkRxWebSocketMessage, String> correlationKeyExtractor) {
+            instance.responseRouter.setCorrelationKeyExtractor(correlationKeyExtractor);
+            return this;
+        }
+
+        /**
+         * Sets the strategy applied to {@link #observeSocketMessages()} when a subscriber is slower than
+         * the incoming frames, using a default buffer capacity.
+         */
+        public Builder messagesOverflowStrategy(OkRxWebSocketOverflowStrategy overflowStrategy) {
+            return messagesOverflowStrategy(overflowStrategy, DEFAULT_OVERFLOW_CAPACITY);
+        }
+
+        /**
+         * Sets the strategy applied to {@link #observeSocketMessages()} when a subscriber is slower than
+         * the incoming frames.
+         *
+         * @param overflowStrategy strategy to apply
+         * @param capacity         maximum number of messages buffered for each subscriber
+         */
+        public Builder messagesOverflowStrategy(OkRxWebSocketOverflowStrategy overflowStrategy, int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Buffer capacity must be greater than zero");
+            }
+            instance.overflowStrategy = overflowStrategy;
+            instance.overflowCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Sets the policy used to reopen the WebSocket after a connection failure.<br/>
+         * While reconnecting, the socket observables stay alive and the state changes to
+         * {@link OkRxWebSocketState#RECONNECTING}.
+         */
+        public Builder reconnectPolicy(OkRxWebSocketReconnectPolicy reconnectPolicy) {
+            instance.reconnectPolicy = reconnectPolicy;
+            return this;
+        }
+
+        /**
+         * Sets the limits of the queue holding the messages sent while the socket is opening or reconnecting.
+         *
+         * @param maxMessages maximum number of queued messages
+         * @param maxBytes    maximum size of the queued messages, in bytes
+         */
+        public Builder sendQueueLimits(int maxMessages, long maxBytes) {
+            if (maxMessages <= 0 || maxBytes <= 0) {
+                throw new IllegalArgumentException("Send queue limits must be greater than zero");
+            }
+            instance.outboundQueue.setLimits(maxMessages, maxBytes);
+            return this;
+        }
+
+        /**
+         * Enables batching of outgoing messages: messages are queued and written every flush interval,
+         * coalescing consecutive messages of the same kind into a single frame with the given framer.
+         *
+         * @param framer        function used to coalesce messages into a frame
+         * @param maxFrameBytes maximum size of a coalesced frame, in bytes
+         * @param flushInterval interval between two writes
+         * @param unit          unit of the flush interval
+         */
+        public Builder batching(OkRxWebSocketFramer framer, int maxFrameBytes, long flushInterval, TimeUnit unit) {
+            if (framer == null) {
+                throw new IllegalArgumentException("Framer must not be null");
+            }
+            if (maxFrameBytes <= 0 || flushInterval <= 0) {
+                throw new IllegalArgumentException("Batching frame size and flush interval must be greater than zero");
+            }
+            instance.outboundQueue.setBatching(framer, maxFrameBytes, unit.toMillis(flushInterval));
+            return this;
+        }
+
+        /**
+         * Sets the outgoing buffer thresholds used by {@link #sendAll(Observable)}: messages are requested
+         * while the buffer is below the high-water mark, and requested again once it drains below the low-water mark.
+         *
+         * @param highWaterMark buffer size, in bytes, above which writing is paused
+         * @param lowWaterMark  buffer size, in bytes, below which writing is resumed
+         */
+        public Builder flowControl(long highWaterMark, long lowWaterMark) {
+            if (lowWaterMark < 0 || lowWaterMark > highWaterMark) {
+                throw new IllegalArgumentException("Low-water mark must be between zero and the high-water mark");
+            }
+            instance.highWaterMark = highWaterMark;
+            instance.lowWaterMark = lowWaterMark;
+            return this;
+        }
+
+        /**
+         * Sets the maximum payload of each chunk written by {@link OkRxWebSocket#sendStream(Source)}.
+         */
+        public Builder streamChunkSize(int streamChunkSize) {
+            if (streamChunkSize <= 0) {
+                throw new IllegalArgumentException("Stream chunk size must be greater than zero");
+            }
+            instance.streamChunkSize = streamChunkSize;
+            return this;
+        }
+
+        /**
+         * Enables the heartbeat: pings are sent while the socket is opened, and the socket is failed
+         * when too many of them are not answered, so that the reconnect policy can reopen it.
+         */
+        public Builder heartbeat(OkRxWebSocketHeartbeat heartbeat) {
+            instance.heartbeat = heartbeat;
+            return this;
+        }
+
+        /**
+         * Sets the {@link OkRxWebSocketMetrics} updated with the measurements of the socket.
+         */
+        public Builder metrics(OkRxWebSocketMetrics metrics) {
+            instance.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Registers the codec used by {@link OkRxWebSocket#sendValue(Object)} and {@link OkRxWebSocket#observe(Class)}
+         * for the given type. Messages are tagged with the type id, which must be the same on both peers.
+         *
+         * @param typeId id of the type on the wire
+         * @param type   type of the values
+         * @param codec  codec converting the values to and from binary messages
+         * @throws IllegalArgumentException if the type or the type id is already registered
+         */
+        public <T> Builder codec(int typeId, Class<T> type, OkRxWebSocketCodec<T> codec) {
+            instance.codecs.register(typeId, type, codec);
+            return this;
+        }
+
+        /**
+         * Enables the subscriptions to the topics multiplexed over the socket, see {@link OkRxWebSocket#subscribe(String)}.
+         *
+         * @param topicExtractor function which extracts the topic from a message, or returns null if the message has no topic
+         * @param topicProtocol  control messages asking the server to publish a topic
+         */
+        public Builder topics(Func1<OkRxWebSocketMessage, String> topicExtractor, OkRxWebSocketTopicProtocol topicProtocol) {
+            instance.topicRouter.setTopicExtractor(topicExtractor);
+            instance.topicProtocol = topicProtocol;
+            return this;
+        }
+
+        /**
+         * Sets the default time after which a request fails with a {@link java.util.concurrent.TimeoutException}
+         * if its response was not received. By default requests wait until the socket is closed.
+         */
+        public Builder requestTimeout(long timeout, TimeUnit unit) {
+            if (timeout < 0) {
+                throw new IllegalArgumentException("Request timeout must not be negative");
+            }
+            instance.requestTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of requests waiting for their response: further requests are not
+         * written until one of the pending ones terminates.
+         */
+        public Builder maxInFlightRequests(int maxInFlightRequests) {
+            if (maxInFlightRequests <= 0) {
+                throw new IllegalArgumentException("Max in-flight requests must be greater than zero");
+            }
+            instance.requestLimiter = new OkRxWebSocketRequestLimiter(maxInFlightRequests);
+            return this;
+        }
+
+        /**
+         * Enables the compression of binary messages, which must be enabled with the same configuration
+         * on the other peer too.
+         */
+        public Builder compression(OkRxWebSocketCompression compression) {
+            instance.compressor = new OkRxWebSocketCompressor(compression);
+            return this;
+        }
+
+        /**
+         * Enables the deduplication of incoming messages: a message whose sequence number was already
+         * received, or is older than the most recent {@code windowSize} sequence numbers, is dropped before
+         * being delivered, and the skipped sequence numbers are reported by {@link OkRxWebSocket#observeSequenceGaps()}.
+         *
+         * @param sequenceExtractor function which extracts the sequence number assigned by the server to a message
+         * @param windowSize        number of recent sequence numbers remembered
+         */
+        public Builder deduplicate(OkRxWebSocketSequenceExtractor sequenceExtractor, int windowSize) {
+            if (windowSize <= 0 || windowSize > 1 << 30) {
+                throw new IllegalArgumentException("Window size must be between one and 2^30");
+            }
+            instance.setSequenceExtractor(sequenceExtractor);
+            instance.sequenceWindow = new OkRxWebSocketSequenceWindow(windowSize);
+            instance.dropDuplicates = true;
+            return this;
+        }
+
+        /**
+         * Enables the resumption of the session: the highest sequence number up to which all the messages were
+         * delivered is tracked across reconnections and passed to the given customizer before every connection,
+         * so that it can be added to the handshake request and the server can send only the messages missed meanwhile.
+         * Without deduplication, the last 1024 sequence numbers are remembered to find the gaps.
+         *
+         * @param sequenceExtractor function which extracts the sequence number assigned by the server to a message,
+         *                          the same used for deduplication if enabled
+         * @param requestCustomizer customizer of the handshake request
+         */
+        public Builder resume(OkRxWebSocketSequenceExtractor sequenceExtractor, OkRxWebSocketRequestCustomizer requestCustomizer) {
+            instance.setSequenceExtractor(sequenceExtractor);
+            instance.requestCustomizer = requestCustomizer;
+            if (instance.sequenceWindow == null) {
+                instance.sequenceWindow = new OkRxWebSocketSequenceWindow(DEFAULT_RESUME_WINDOW_SIZE);
+            }
+            return this;
+        }
+
+        /**
+         * Enables the persistent outbox: {@link OkRxWebSocket#send(String)} and {@link OkRxWebSocket#send(byte[])}
+         * append the messages to a journal on disk, even before the socket is opened or while it is reconnecting,
+         * and the journal is written into the socket in order every time it is opened.<br/>
+         * Closing the socket releases the journal: messages sent afterwards fail until the socket is opened again.
+         */
+        public Builder outbox(OkRxWebSocketOutbox outbox) {
+            instance.outbox = outbox;
             return this;
         }
 
         public OkRxWebSocket build() {
-            if (instance.url == null || TextUtils.isEmpty(instance.url.trim())) {
+            if (instance.url == null || instance.url.trim().isEmpty()) {
                 instance.logger.warn(TAG, "Creating a OkRxWebSocket without url");
             }
+            if (instance.heartbeat != null) {
+                instance.heartbeatEngine = new OkRxWebSocketHeartbeatEngine(instance.heartbeat, instance.socketScheduler, instance.heartbeatListener());
+            }
+            if (instance.metrics != null) {
+                instance.bindMetrics();
+            }
+            if (instance.outbox != null) {
+                instance.outboxWriter = new OkRxWebSocketOutboxWriter(instance.outbox, instance.outboxTransmitter(),
+                        instance.logger, instance.highWaterMark, FLOW_CONTROL_POLL_INTERVAL_MILLIS);
+                instance.outboxWriter.start();
+            }
             return instance;
         }
     }
@@ -102,12 +429,20 @@ public final class OkRxWebSocket {
 
     }
 
+    private void setSequenceExtractor(OkRxWebSocketSequenceExtractor sequenceExtractor) {
+        if (this.sequenceExtractor != null && this.sequenceExtractor != sequenceExtractor) {
+            throw new IllegalArgumentException("Deduplication and resumption must use the same sequence extractor");
+        }
+        this.sequenceExtractor = sequenceExtractor;
+    }
+
     public String getUrl() {
         return url;
     }
 
     public void setUrl(String url) {
-        if (webSocket == null) {
+        OkRxWebSocketState state = stateMachine.get();
+        if (state == OkRxWebSocketState.CLOSED || state == OkRxWebSocketState.ERROR) {
             this.url = url;
         } else {
             throw new IllegalStateException("Unable to change OkRxWebSocket URL when opened");
@@ -115,281 +450,1356 @@ public final class OkRxWebSocket {
     }
 
     public OkRxWebSocketState getSocketState() {
-        return socketState;
-    }
-
-    private void setSocketState(OkRxWebSocketState socketState) {
-        this.socketState = socketState;
-        socketStateChangesSubject.onNext(socketState);
+        return stateMachine.get();
     }
 
+    /**
+     * Returns an {@link Observable} which emits every message received by the WebSocket.<br/>
+     * The stream belongs to this instance: it never terminates, and keeps emitting the messages of every
+     * session across any number of {@link #open()} and {@link #close()} cycles.<br/>
+     * Slow subscribers are handled with the overflow strategy configured in the {@link Builder}.
+     */
     public Observable<OkRxWebSocketMessage> observeSocketMessages() {
-        return socketMessagesSubject;
-    }
-
-    public Observable<OkRxWebSocketActivity> observeSocketActivity() {
-        return socketActivitySubject;
-    }
-
-    public Observable<OkRxWebSocketState> observeSocketStateChanges() {
-        return socketStateChangesSubject;
+        return recordDeliveryTime(applyOverflowStrategy(socketMessagesSubject));
     }
 
-    public Observable<OkRxWebSocketState> on(final OkRxWebSocketState socketState) {
-        return socketStateChangesSubject.filter(new Func1<OkRxWebSocketState, Boolean>() {
+    /**
+     * Returns an {@link Observable} which emits every message received by the WebSocket, parsed in the given type
+     * with the configured {@link OkRxWebSocketParser}.<br/>
+     * Parsing happens on the parse {@link Scheduler}, so that it never blocks the thread reading from the socket.
+     * Messages which fail to parse are logged and skipped.
+     *
+     * @param type type of the messages in which be parsed
+     */
+    public <T> Observable<T> observeSocketMessages(final Class<T> type) {
+        return Observable.defer(new Func0<Observable<T>>() {
             @Override
-            public Boolean call(OkRxWebSocketState okRxWebSocketState) {
-                return okRxWebSocketState == socketState;
+            public Observable<T> call() {
+                if (parser == null) {
+                    return Observable.error(new ParserNotImplementedException());
+                }
+                return observeMessagesOnParseScheduler().lift(new OkRxWebSocketParseOperator<>(parseFunctions.frame(type), logger));
             }
         });
     }
 
     /**
-     * Opens a WebSocket to the configured URL.<br/>
-     * Returns an {@link Observable} which emits events for monitoring the socket activity, in particular:
-     * <ul>
-     * <li>Socket opened</li>
-     * <li>Socket closing</li>
-     * <li>Socket closed</li>
-     * </ul>
+     * Returns an {@link Observable} which emits every message received by the WebSocket, parsed in the given
+     * generic type. Requires the configured parser to be an {@link OkRxWebSocketTypeParser}.<br/>
+     * Parsing happens on the parse {@link Scheduler}, so that it never blocks the thread reading from the socket.
+     * Messages which fail to parse are logged and skipped.
      *
-     * @return {@link Observable}<{@link OkRxWebSocketActivity}> for monitoring socket activity.<br/>
-     * The Observable works by default in the io {@link Scheduler}
+     * @param type type of the messages in which be parsed
      */
-    public Observable<OkRxWebSocketActivity> open() {
-        return Observable.create(new Action1<Emitter<OkRxWebSocketActivity>>() {
+    public <T> Observable<T> observeSocketMessages(final Type type) {
+        return Observable.defer(new Func0<Observable<T>>() {
             @Override
-            public void call(final Emitter<OkRxWebSocketActivity> emitter) {
-                if (url == null) {
-                    throw new IllegalStateException("Attempting to connect to a null URL");
-                }
-
-                try {
-                    URI.create(url); // validate URL
-                } catch (Exception e) {
-                    throw new InvalidURLException(e.getMessage());
+            public Observable<T> call() {
+                if (!(parser instanceof OkRxWebSocketTypeParser)) {
+                    return Observable.error(new ParserNotImplementedException());
                 }
-
-                setSocketState(OkRxWebSocketState.OPENING);
-
-                final Request request = new Request.Builder().url(url).build();
-
-                webSocket = okHttpClient.newWebSocket(request, new WebSocketListener() {
-                    @Override
-                    public void onOpen(WebSocket webSocket, Response response) {
-                        super.onOpen(webSocket, response);
-                        emitter.onNext(OkRxWebSocketActivity.createForOpenedWebsocket(response));
-                        setSocketState(OkRxWebSocketState.OPENED);
-                        socketActivitySubject.onNext(OkRxWebSocketActivity.createForOpenedWebsocket(response));
-                    }
-
-                    @Override
-                    public void onMessage(WebSocket webSocket, String text) {
-                        super.onMessage(webSocket, text);
-                        socketMessagesSubject.onNext(OkRxWebSocketMessage.createForNewMessage(charset, text));
-                    }
-
-                    @Override
-                    public void onMessage(WebSocket webSocket, ByteString bytes) {
-                        super.onMessage(webSocket, bytes);
-                        socketMessagesSubject.onNext(OkRxWebSocketMessage.createForNewMessage(charset, bytes));
-                    }
-
-                    @Override
-                    public void onClosing(WebSocket webSocket, int code, String reason) {
-                        super.onClosing(webSocket, code, reason);
-                        socketActivitySubject.onNext(OkRxWebSocketActivity.createForClosingWebsocket(code, reason));
-                        setSocketState(OkRxWebSocketState.CLOSING);
-                    }
-
-                    @Override
-                    public void onClosed(WebSocket ws, int code, String reason) {
-                        super.onClosed(ws, code, reason);
-                        emitter.onCompleted();
-                        socketActivitySubject.onNext(OkRxWebSocketActivity.createForClosedWebsocket(code, reason));
-                        setSocketState(OkRxWebSocketState.CLOSED);
-                        socketActivitySubject.onCompleted();
-                        socketMessagesSubject.onCompleted();
-                        webSocket = null;
-                    }
-
-                    @Override
-                    public void onFailure(WebSocket webSocket, Throwable t, Response response) {
-                        super.onFailure(webSocket, t, response);
-                        emitter.onError(t);
-                        setSocketState(OkRxWebSocketState.ERROR);
-                        socketActivitySubject.onError(t);
-                    }
-                });
-
-                emitter.setCancellation(new Cancellable() {
-                    @Override
-                    public void cancel() throws Exception {
-                        closeWebsocket();
-                    }
-                });
+                return observeMessagesOnParseScheduler().lift(new OkRxWebSocketParseOperator<>(parseFunctions.<T>frame(type), logger));
             }
-        }, Emitter.BackpressureMode.NONE).compose(this.<OkRxWebSocketActivity>observableSchedulers());
+        });
     }
 
     /**
-     * Closes the previously opened WebSocket
+     * Returns an {@link Observable} which emits every message received by the WebSocket, parsed in the type
+     * associated to its discriminator. Messages whose discriminator has no associated type, or which fail
+     * to parse, are skipped.<br/>
+     * Parsing happens on the parse {@link Scheduler}, so that it never blocks the thread reading from the socket.
      *
-     * @return {@link Completable} for operation completion
+     * @param discriminator function which extracts the discriminator from a message
+     * @param types         types in which the messages are parsed, by discriminator
      */
-    public Completable close() {
-        return Completable.fromAction(new Action0() {
+    public Observable<Object> observeSocketMessages(final Func1<OkRxWebSocketMessage, String> discriminator,
+                                                    Map<String, Class<?>> types) {
+        final Map<String, Class<?>> typesByDiscriminator = new HashMap<>(types);
+        return Observable.defer(new Func0<Observable<Object>>() {
             @Override
-            public void call() {
-                if (webSocket != null) {
-                    closeWebsocket();
+            public Observable<Object> call() {
+                if (parser == null) {
+                    return Observable.error(new ParserNotImplementedException());
                 }
+                return observeMessagesOnParseScheduler().concatMap(new Func1<OkRxWebSocketMessage, Observable<Object>>() {
+                    @Override
+                    public Observable<Object> call(OkRxWebSocketMessage okRxWebSocketMessage) {
+                        Class<?> type = typesByDiscriminator.get(discriminator.call(okRxWebSocketMessage));
+                        if (type == null) {
+                            return Observable.empty();
+                        }
+                        try {
+                            return Observable.<Object>just(parseFunctions.parseFrame(type, okRxWebSocketMessage));
+                        } catch (RuntimeException e) {
+                            logger.error(TAG, "Unable to parse message, skipping it", e);
+                            return Observable.empty();
+                        }
+                    }
+                });
             }
-        }).compose(completableSchedulers());
+        });
     }
 
-    private void closeWebsocket() {
-        webSocket.close(1000, "Socket closed by client");
+    private Observable<OkRxWebSocketMessage> observeMessagesOnParseScheduler() {
+        Observable<OkRxWebSocketMessage> messages = applyOverflowStrategy(socketMessagesSubject);
+        if (overflowStrategy == OkRxWebSocketOverflowStrategy.NONE) {
+            // switching thread requires backpressure: without a strategy, buffer like the subject would
+            messages = messages.onBackpressureBuffer();
+        }
+        return recordDeliveryTime(messages.observeOn(parseScheduler));
     }
 
-    /**
-     * Writes the given message into the WebSocket.
-     *
-     * @param message message to write
-     * @return {@link Completable} for operation completion
-     */
-    public Completable send(final String message) {
-        return Completable.fromAction(new Action0() {
+    private Observable<OkRxWebSocketMessage> recordDeliveryTime(Observable<OkRxWebSocketMessage> messages) {
+        if (metrics == null) {
+            return messages;
+        }
+        return messages.doOnNext(new Action1<OkRxWebSocketMessage>() {
             @Override
-            public void call() {
-                logger.debug(TAG, "Sending message: " + message);
-                webSocket.send(message);
+            public void call(OkRxWebSocketMessage okRxWebSocketMessage) {
+                metrics.onMessageDelivered(System.nanoTime() - okRxWebSocketMessage.receivedAtNanos);
             }
-        }).compose(completableSchedulers());
+        });
     }
 
     /**
-     * Writes the given byte array message into the WebSocket.
-     *
-     * @param message message to write
-     * @return {@link Completable} for operation completion
+     * Returns an {@link Observable} which emits the messages received during the current session, or during
+     * the next one if the socket is closed. It completes when the session is closed and fails when the
+     * session fails, like the {@link Observable} returned by {@link #open()}.
      */
-    public Completable send(final byte[] message) {
-        return Completable.fromAction(new Action0() {
+    public Observable<OkRxWebSocketMessage> observeSessionMessages() {
+        return Observable.defer(new Func0<Observable<OkRxWebSocketMessage>>() {
             @Override
-            public void call() {
-                ByteString byteString = ByteString.of(message);
-                logger.debug(TAG, "Sending message: " + byteString.base64());
-                webSocket.send(byteString);
+            public Observable<OkRxWebSocketMessage> call() {
+                return sessionMessagesSubject;
             }
-        }).compose(completableSchedulers());
+        });
     }
 
     /**
-     * Writes the given message into the WebSocket, and returns an {@link Observable} which emits the
-     * response filtered with the given response matcher function
+     * Returns an {@link Observable} which emits the messages of the given topic, as returned by the topic
+     * extractor configured in the {@link Builder}.<br/>
+     * The server is asked to publish the topic when it gets its first subscriber, and to stop when the last
+     * one unsubscribes. Subscriptions are sent again whenever the socket is opened or reconnected.
      *
-     * @param message         message to write
-     * @param responseMatcher function applied to determine the response
-     * @return {@link Observable} for response delivery
+     * @param topic topic of the messages
      */
-    public Observable<OkRxWebSocketMessage> send(final String message, final Func1<OkRxWebSocketMessage, Boolean> responseMatcher) {
-        return Observable.defer(new Func0<Observable<OkRxWebSocketMessage>>() {
+    public Observable<OkRxWebSocketMessage> subscribe(final String topic) {
+        return applyOverflowStrategy(Observable.unsafeCreate(new Observable.OnSubscribe<OkRxWebSocketMessage>() {
             @Override
-            public Observable<OkRxWebSocketMessage> call() {
-                if (webSocket == null) {
-                    return Observable.error(new UnsupportedOperationException("OkRxWebSocket is closed"));
+            public void call(Subscriber<? super OkRxWebSocketMessage> subscriber) {
+                if (!topicRouter.isEnabled()) {
+                    subscriber.onError(new IllegalStateException("Unable to subscribe to topics without a topic extractor"));
+                    return;
+                }
+                Observable<OkRxWebSocketMessage> messages;
+                synchronized (topicRouter) {
+                    messages = topicRouter.acquire(topic);
+                    if (topicRouter.isFirstSubscriber(topic)) {
+                        writeTopicControlMessage(topicProtocol.subscribeMessage(topic));
+                    }
                 }
-                logger.debug(TAG, "Sending message: " + message);
-                webSocket.send(message);
-                return socketMessagesSubject.filter(responseMatcher).filter(new Func1<OkRxWebSocketMessage, Boolean>() {
+                subscriber.add(Subscriptions.create(new Action0() {
                     @Override
-                    public Boolean call(OkRxWebSocketMessage okRxWebSocketMessage) {
-                        return okRxWebSocketMessage.getMessageType() == OkRxWebSocketMessageType.NEW_MESSAGE;
+                    public void call() {
+                        synchronized (topicRouter) {
+                            if (topicRouter.release(topic)) {
+                                writeTopicControlMessage(topicProtocol.unsubscribeMessage(topic));
+                            }
+                        }
                     }
-                }).take(1);
+                }));
+                messages.unsafeSubscribe(subscriber);
             }
-        }).compose(this.<OkRxWebSocketMessage>observableSchedulers());
+        }));
     }
 
     /**
-     * Writes the given byte array message into the WebSocket, and returns an {@link Observable} which emits the
-     * response filtered with the given response matcher function
-     *
-     * @param message         message to write
-     * @param responseMatcher function applied to determine the response
-     * @return {@link Observable} for response delivery
+     * Writes a topic subscription change. Nothing is written while the socket is not opened,
+     * because the active subscriptions are sent as soon as it opens.
      */
-    public Observable<OkRxWebSocketMessage> send(final byte[] message, final Func1<OkRxWebSocketMessage, Boolean> responseMatcher) {
-        return Observable.defer(new Func0<Observable<OkRxWebSocketMessage>>() {
-            @Override
-            public Observable<OkRxWebSocketMessage> call() {
-                if (webSocket == null) {
-                    return Observable.error(new UnsupportedOperationException("OkRxWebSocket is closed"));
-                }
-                ByteString byteString = ByteString.of(message);
-                logger.debug(TAG, "Sending message: " + byteString.base64());
-                webSocket.send(byteString);
-                return socketMessagesSubject.filter(responseMatcher).filter(new Func1<OkRxWebSocketMessage, Boolean>() {
-                    @Override
-                    public Boolean call(OkRxWebSocketMessage okRxWebSocketMessage) {
-                        return okRxWebSocketMessage.getMessageType() == OkRxWebSocketMessageType.NEW_MESSAGE;
-                    }
-                }).take(1);
-            }
-        }).compose(this.<OkRxWebSocketMessage>observableSchedulers());
+    private void writeTopicControlMessage(String message) {
+        if (stateMachine.get() != OkRxWebSocketState.OPENED) {
+            return;
+        }
+        try {
+            logger.debugPayload(TAG, "Sending topic control message: ", message);
+            write(message, null);
+        } catch (RuntimeException e) {
+            logger.warn(TAG, "Unable to write topic control message: %s", e.getMessage());
+        }
     }
 
     /**
-     * Writes the given byte array message into the WebSocket, and returns an {@link Observable} which emits the
-     * response filtered with the given response matcher function
+     * Returns an {@link Observable} which emits every binary message of the given type, decoded with the codec
+     * registered for it in the {@link Builder}. Messages of other types, and the ones failing to decode, are skipped.<br/>
+     * Decoding happens on the parse {@link Scheduler}, so that it never blocks the thread reading from the socket.
      *
-     * @param message         message to write
-     * @param responseType    type of the response in which be parsed
-     * @param responseMatcher function applied to determine the response
-     * @return {@link Observable} for response delivery
+     * @param type type of the values
      */
-    public <T> Observable<T> send(final String message, final Class<T> responseType, final Func1<OkRxWebSocketMessage, Boolean> responseMatcher) {
+    public <T> Observable<T> observe(final Class<T> type) {
         return Observable.defer(new Func0<Observable<T>>() {
             @Override
             public Observable<T> call() {
-                if (parser == null) {
-                    return Observable.error(new ParserNotImplementedException());
+                if (!codecs.isRegistered(type)) {
+                    return Observable.error(new IllegalArgumentException("No codec registered for " + type.getName()));
                 }
-                return send(message, responseMatcher).map(new Func1<OkRxWebSocketMessage, T>() {
+                return observeMessagesOnParseScheduler().filter(new Func1<OkRxWebSocketMessage, Boolean>() {
+                    @Override
+                    public Boolean call(OkRxWebSocketMessage okRxWebSocketMessage) {
+                        return okRxWebSocketMessage.isBinary();
+                    }
+                }).lift(new OkRxWebSocketParseOperator<>(new Func1<OkRxWebSocketMessage, T>() {
                     @Override
                     public T call(OkRxWebSocketMessage okRxWebSocketMessage) {
-                        return parser.parseResponse(responseType, okRxWebSocketMessage.getResponseString());
+                        long start = metrics != null ? System.nanoTime() : 0;
+                        T value = codecs.decode(type, okRxWebSocketMessage.getResponseByteString());
+                        if (metrics != null && value != null) {
+                            metrics.onMessageParsed(System.nanoTime() - start);
+                        }
+                        return value;
+                    }
+                }, logger)).filter(new Func1<T, Boolean>() {
+                    @Override
+                    public Boolean call(T value) {
+                        return value != null;
                     }
                 });
             }
-        }).compose(this.<T>observableSchedulers());
+        });
     }
 
     /**
-     * Writes the given byte array message into the WebSocket, and returns an {@link Observable} which emits the
-     * response filtered with the given response matcher function
+     * Returns a stream which caches the latest message of each key, as returned by the given key extractor,
+     * and delivers only the latest values to slow subscribers. Messages without a key are ignored.<br/>
+     * The stream starts caching immediately, until it is unsubscribed.
      *
-     * @param message         message to write
-     * @param responseType    type of the response in which be parsed
-     * @param responseMatcher function applied to determine the response
-     * @return {@link Observable} for response delivery
+     * @param keyExtractor function which extracts the key from a message, or returns null if the message has no key
      */
-    public <T> Observable<T> send(final byte[] message, final Class<T> responseType, final Func1<OkRxWebSocketMessage, Boolean> responseMatcher) {
-        return Observable.defer(new Func0<Observable<T>>() {
-            @Override
-            public Observable<T> call() {
-                if (parser == null) {
-                    return Observable.error(new ParserNotImplementedException());
-                }
-                return send(message, responseMatcher).map(new Func1<OkRxWebSocketMessage, T>() {
-                    @Override
-                    public T call(OkRxWebSocketMessage okRxWebSocketMessage) {
-                        return parser.parseResponse(responseType, okRxWebSocketMessage.getResponseByte());
-                    }
-                });
-            }
-        }).compose(this.<T>observableSchedulers());
+    public OkRxWebSocketConflatedStream conflate(Func1<OkRxWebSocketMessage, String> keyExtractor) {
+        return new OkRxWebSocketConflatedStream(socketMessagesSubject, keyExtractor, socketScheduler);
+    }
+
+    /**
+     * Returns the messages without any overflow strategy, for the internal response matching.
+     */
+    Observable<OkRxWebSocketMessage> observeRawSocketMessages() {
+        return socketMessagesSubject;
+    }
+
+    /**
+     * Replaces the response router, so that a response received by any socket of a pool
+     * can be delivered to a request sent through another one.
+     */
+    void setResponseRouter(OkRxWebSocketResponseRouter responseRouter) {
+        this.responseRouter = responseRouter;
+    }
+
+    /**
+     * @return the number of messages dropped so far by the configured overflow strategy, across all subscribers
+     */
+    public long getDroppedMessagesCount() {
+        return droppedMessagesCount.get();
+    }
+
+    /**
+     * @return the highest sequence number up to which all the messages were delivered,
+     * or {@link OkRxWebSocketSequenceExtractor#NO_SEQUENCE} if none
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Sets the sequence number from which the next connection resumes the session, for example
+     * the one stored before the application was restarted.
+     */
+    public void setLastSequence(long lastSequence) {
+        this.lastSequence = lastSequence;
+        if (sequenceWindow != null && lastSequence != OkRxWebSocketSequenceExtractor.NO_SEQUENCE) {
+            sequenceWindow.reset(lastSequence);
+        }
+    }
+
+    /**
+     * @return the number of incoming messages dropped so far as duplicates or as older than the deduplication window
+     */
+    public long getDuplicateMessagesCount() {
+        return duplicateMessagesCount.get();
+    }
+
+    /**
+     * Returns an {@link Observable} which emits the ranges of sequence numbers skipped by the server,
+     * for example to request a resync of the missing messages.
+     */
+    public Observable<OkRxWebSocketSequenceGap> observeSequenceGaps() {
+        if (sequenceWindow == null) {
+            throw new IllegalStateException("Neither deduplication nor resumption is enabled");
+        }
+        return sequenceGapsSubject;
+    }
+
+    /**
+     * Returns an {@link Observable} which emits the activity of every session of this instance.
+     * It never terminates: failures are emitted as {@link OkRxWebSocketMessageType#FAILED} activities.
+     */
+    public Observable<OkRxWebSocketActivity> observeSocketActivity() {
+        return socketActivitySubject;
+    }
+
+    /**
+     * Returns an {@link Observable} which emits the round-trip time of every answered heartbeat ping,
+     * together with the percentiles of the most recent samples.
+     */
+    public Observable<OkRxWebSocketRttSample> observeRoundTripTimes() {
+        if (heartbeatEngine == null) {
+            throw new IllegalStateException("Heartbeat is not enabled");
+        }
+        return heartbeatEngine.observeRoundTripTimes();
+    }
+
+    public Observable<OkRxWebSocketState> observeSocketStateChanges() {
+        return stateMachine.observe();
+    }
+
+    public Observable<OkRxWebSocketState> on(final OkRxWebSocketState socketState) {
+        return stateMachine.observe().filter(new Func1<OkRxWebSocketState, Boolean>() {
+            @Override
+            public Boolean call(OkRxWebSocketState okRxWebSocketState) {
+                return okRxWebSocketState == socketState;
+            }
+        });
+    }
+
+    /**
+     * Opens a WebSocket to the configured URL.<br/>
+     * Returns an {@link Observable} which emits events for monitoring the socket activity, in particular:
+     * <ul>
+     * <li>Socket opened</li>
+     * <li>Socket closing</li>
+     * <li>Socket closed</li>
+     * </ul>
+     *
+     * @return {@link Observable}<{@link OkRxWebSocketActivity}> for monitoring socket activity.<br/>
+     * The Observable works by default in the io {@link Scheduler}
+     */
+    public Observable<OkRxWebSocketActivity> open() {
+        return Observable.create(new Action1<Emitter<OkRxWebSocketActivity>>() {
+            @Override
+            public void call(final Emitter<OkRxWebSocketActivity> emitter) {
+                if (url == null) {
+                    throw new IllegalStateException("Attempting to connect to a null URL");
+                }
+
+                try {
+                    URI.create(url); // validate URL
+                } catch (Exception e) {
+                    throw new InvalidURLException(e.getMessage());
+                }
+
+                if (!stateMachine.transition(OkRxWebSocketState.CLOSED, OkRxWebSocketState.OPENING)
+                        && !stateMachine.transition(OkRxWebSocketState.ERROR, OkRxWebSocketState.OPENING)) {
+                    throw new IllegalStateException("OkRxWebSocket is already opened");
+                }
+
+                closeRequested = false;
+                reconnectAttempts = 0;
+                if (outboxWriter != null) {
+                    outboxWriter.start();
+                }
+                sessionEmitter = emitter;
+                connect(emitter);
+
+                emitter.setCancellation(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        closeWebsocket();
+                    }
+                });
+            }
+        }, Emitter.BackpressureMode.BUFFER).compose(this.<OkRxWebSocketActivity>observableSchedulers());
+    }
+
+    /**
+     * Creates a new WebSocket for the current session. The state must already be {@link OkRxWebSocketState#OPENING}.
+     */
+    private void connect(final Emitter<OkRxWebSocketActivity> emitter) {
+        Request.Builder requestBuilder = new Request.Builder().url(url);
+        if (requestCustomizer != null) {
+            requestCustomizer.customize(requestBuilder, lastSequence);
+        }
+        final Request request = requestBuilder.build();
+        // set once the connection fails or closes, which may happen before newWebSocket() returns
+        final AtomicBoolean terminated = new AtomicBoolean();
+
+        WebSocket socket = wrap(okHttpClient.newWebSocket(request, new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                super.onOpen(webSocket, response);
+                WebSocket socket = wrap(webSocket);
+                OkRxWebSocket.this.webSocket = socket;
+                reconnectAttempts = 0;
+                synchronized (topicRouter) {
+                    synchronized (outboundQueue) {
+                        if (outboxWriter != null) {
+                            // before the state changes, so that the outbox never writes into the new connection
+                            // from where it stopped on the previous one
+                            outboxWriter.onOpened();
+                        }
+                        stateMachine.moveTo(OkRxWebSocketState.OPENED);
+                        outboundQueue.flush(socket);
+                    }
+                    if (topicRouter.isEnabled()) {
+                        // the server forgets the subscriptions of a previous connection
+                        for (String topic : topicRouter.activeTopics()) {
+                            writeTopicControlMessage(topicProtocol.subscribeMessage(topic));
+                        }
+                    }
+                }
+                outboundQueue.notifySubscribers();
+                if (heartbeatEngine != null) {
+                    // the same socket as the messages, so that pings go through the same wrappers
+                    heartbeatEngine.start(socket);
+                }
+                emitter.onNext(OkRxWebSocketActivity.createForOpenedWebsocket(response));
+                socketActivitySubject.onNext(OkRxWebSocketActivity.createForOpenedWebsocket(response));
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, String text) {
+                super.onMessage(webSocket, text);
+                dispatchMessage(OkRxWebSocketMessage.createForNewMessage(charset, text));
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, ByteString bytes) {
+                super.onMessage(webSocket, bytes);
+                ByteString message = bytes;
+                if (compressor != null) {
+                    try {
+                        message = compressor.decompress(bytes);
+                    } catch (IllegalArgumentException e) {
+                        // not written by a compressor with the same configuration, e.g. a server ignoring it
+                        logger.warn(TAG, "Dropping binary frame of %d bytes: %s", bytes.size(), e.getMessage());
+                        return;
+                    }
+                }
+                dispatchMessage(OkRxWebSocketMessage.createForNewMessage(charset, message));
+            }
+
+            @Override
+            public void onClosing(WebSocket webSocket, int code, String reason) {
+                super.onClosing(webSocket, code, reason);
+                socketActivitySubject.onNext(OkRxWebSocketActivity.createForClosingWebsocket(code, reason));
+                stateMachine.moveTo(OkRxWebSocketState.CLOSING);
+            }
+
+            @Override
+            public void onClosed(WebSocket ws, int code, String reason) {
+                super.onClosed(ws, code, reason);
+                releaseWebSocket(terminated);
+                onSocketClosed(emitter, code, reason);
+            }
+
+            @Override
+            public void onFailure(WebSocket ws, Throwable t, Response response) {
+                super.onFailure(ws, t, response);
+                releaseWebSocket(terminated);
+                if (closeRequested) {
+                    // the attempt failed after the client asked to close it
+                    onSocketClosed(emitter, 1000, "Socket closed by client");
+                    return;
+                }
+                stopHeartbeat();
+                abortIncomingStreams();
+                if (!scheduleReconnect(emitter, t) && stateMachine.moveTo(OkRxWebSocketState.ERROR)) {
+                    SocketClosedException error = new SocketClosedException("OkRxWebSocket failed: " + t.getMessage(), t);
+                    outboundQueue.clear(error);
+                    outboundQueue.notifySubscribers();
+                    failPendingRequests(error);
+                    endSession().onError(t);
+                    emitter.onError(t);
+                    socketActivitySubject.onNext(OkRxWebSocketActivity.createForFailedWebsocket(t, response));
+                }
+            }
+        }));
+        synchronized (webSocketLock) {
+            if (!terminated.get()) {
+                webSocket = socket;
+            }
+        }
+    }
+
+    /**
+     * Forgets the WebSocket of a connection which failed or closed.
+     */
+    private void releaseWebSocket(AtomicBoolean terminated) {
+        synchronized (webSocketLock) {
+            terminated.set(true);
+            webSocket = null;
+        }
+    }
+
+    private WebSocket wrap(WebSocket webSocket) {
+        return compressor != null ? compressor.wrap(webSocket) : webSocket;
+    }
+
+    private void onSocketClosed(Emitter<OkRxWebSocketActivity> emitter, int code, String reason) {
+        webSocket = null;
+        stopHeartbeat();
+        abortIncomingStreams();
+        if (!stateMachine.moveTo(OkRxWebSocketState.CLOSED)) {
+            return; // already closed
+        }
+        SocketClosedException error = new SocketClosedException("OkRxWebSocket closed: " + code + " " + reason);
+        outboundQueue.clear(error);
+        outboundQueue.notifySubscribers();
+        failPendingRequests(error);
+        endSession().onCompleted();
+        emitter.onCompleted();
+        socketActivitySubject.onNext(OkRxWebSocketActivity.createForClosedWebsocket(code, reason));
+    }
+
+    /**
+     * Replaces the messages stream of the ended session with the one of the next session.
+     *
+     * @return the stream of the ended session, to be terminated
+     */
+    private PublishSubject<OkRxWebSocketMessage> endSession() {
+        PublishSubject<OkRxWebSocketMessage> endedSession = sessionMessagesSubject;
+        sessionMessagesSubject = PublishSubject.create();
+        return endedSession;
+    }
+
+    /**
+     * Fails the requests sent through this socket which are still waiting for their response.
+     */
+    private void failPendingRequests(Throwable error) {
+        responseRouter.failAll(this, error);
+        requestFailuresSubject.onNext(error);
+    }
+
+    /**
+     * Schedules a new connection attempt after a failure, according to the configured reconnect policy.
+     *
+     * @return false if the socket must not be reconnected
+     */
+    private boolean scheduleReconnect(final Emitter<OkRxWebSocketActivity> emitter, Throwable t) {
+        if (reconnectPolicy == null || closeRequested || reconnectAttempts >= reconnectPolicy.getMaxAttempts()) {
+            return false;
+        }
+        reconnectAttempts++;
+        long delay = reconnectPolicy.getDelayMillis(reconnectAttempts);
+        if (!stateMachine.moveTo(OkRxWebSocketState.RECONNECTING)) {
+            return false;
+        }
+        logger.warn(TAG, "Connection failed (%s), reconnecting in %d ms, attempt %d", t.getMessage(), delay, reconnectAttempts);
+        if (metrics != null) {
+            metrics.onReconnect();
+        }
+        reconnectSubscription = Observable.timer(delay, TimeUnit.MILLISECONDS, socketScheduler)
+                .subscribe(new Action1<Long>() {
+                    @Override
+                    public void call(Long tick) {
+                        if (closeRequested) {
+                            // the close may have been requested before the state moved to RECONNECTING
+                            onSocketClosed(emitter, 1000, "Socket closed by client");
+                            return;
+                        }
+                        // a close requested meanwhile already moved the state to CLOSED
+                        if (stateMachine.transition(OkRxWebSocketState.RECONNECTING, OkRxWebSocketState.OPENING)) {
+                            connect(emitter);
+                        }
+                    }
+                });
+        return true;
+    }
+
+    private void stopHeartbeat() {
+        if (heartbeatEngine != null) {
+            heartbeatEngine.stop();
+        }
+    }
+
+    private OkRxWebSocketHeartbeatEngine.Listener heartbeatListener() {
+        return new OkRxWebSocketHeartbeatEngine.Listener() {
+            @Override
+            public void onHeartbeatLost(WebSocket webSocket, int missedPongs) {
+                logger.warn(TAG, "Heartbeat lost after %d missed pongs, dropping the connection", missedPongs);
+                webSocket.cancel(); // fails the socket, so the reconnect policy applies
+            }
+
+            @Override
+            public void onPingSent(String ping) {
+                if (metrics != null) {
+                    metrics.onFrameSent(OkRxWebSocketOutboundQueue.sizeOf(ping));
+                }
+            }
+        };
+    }
+
+    private void bindMetrics() {
+        if (parseFunctions != null) {
+            parseFunctions.setMetrics(metrics);
+        }
+        outboundQueue.setMetrics(metrics);
+        metrics.registerGauge(OkRxWebSocketMetrics.GAUGE_QUEUE_SIZE, new OkRxWebSocketGauge() {
+            @Override
+            public long getValue() {
+                return queueSize();
+            }
+        });
+        metrics.registerGauge(OkRxWebSocketMetrics.GAUGE_PENDING_REQUESTS, new OkRxWebSocketGauge() {
+            @Override
+            public long getValue() {
+                return responseRouter.pendingCount(OkRxWebSocket.this) + pendingMatcherRequests.get();
+            }
+        });
+        stateMachine.observe().subscribe(new Action1<OkRxWebSocketState>() {
+
+            // transitions are emitted one at a time, in order
+            private OkRxWebSocketState lastState = stateMachine.get();
+            private long lastChangeNanos = System.nanoTime();
+
+            @Override
+            public void call(OkRxWebSocketState state) {
+                long now = System.nanoTime();
+                metrics.onStateExited(lastState, now - lastChangeNanos);
+                lastState = state;
+                lastChangeNanos = now;
+            }
+        });
+    }
+
+    private void dispatchMessage(OkRxWebSocketMessage message) {
+        if (metrics != null) {
+            message.receivedAtNanos = System.nanoTime();
+            metrics.onFrameReceived(message.isBinary()
+                    ? message.getResponseByteString().size()
+                    : Utf8.size(message.getResponseString()));
+        }
+        if (heartbeatEngine != null && heartbeatEngine.onMessage(message)) {
+            return;
+        }
+        OkRxWebSocketStreamReassembler reassembler = streamReassembler.get();
+        if (reassembler != null && message.isBinary() && reassembler.onFrame(message.getResponseByteString())) {
+            return;
+        }
+        long sequence = sequenceExtractor != null
+                ? sequenceExtractor.extractSequence(message)
+                : OkRxWebSocketSequenceExtractor.NO_SEQUENCE;
+        if (sequence != OkRxWebSocketSequenceExtractor.NO_SEQUENCE && !acceptSequence(sequence)) {
+            return;
+        }
+        if (outboxWriter != null && outbox.getAckExtractor() != null) {
+            long acknowledged = outbox.getAckExtractor().extractSequence(message);
+            if (acknowledged != OkRxWebSocketSequenceExtractor.NO_SEQUENCE) {
+                outboxWriter.onAck(acknowledged);
+            }
+        }
+        responseRouter.dispatch(message);
+        topicRouter.dispatch(message);
+        socketMessagesSubject.onNext(message);
+        sessionMessagesSubject.onNext(message);
+        if (sequence != OkRxWebSocketSequenceExtractor.NO_SEQUENCE) {
+            // advanced only once delivered, so that a resumed session never skips a message not yet handled
+            lastSequence = sequenceWindow.getContiguousSequence();
+        }
+    }
+
+    /**
+     * Records the given sequence number in the window, reporting the skipped ones.
+     *
+     * @return false if the message must be dropped
+     */
+    private boolean acceptSequence(long sequence) {
+        switch (sequenceWindow.accept(sequence)) {
+            case OkRxWebSocketSequenceWindow.ACCEPTED_AFTER_GAP:
+                sequenceGapsSubject.onNext(new OkRxWebSocketSequenceGap(sequenceWindow.getGapStart(), sequence - 1));
+                return true;
+            case OkRxWebSocketSequenceWindow.DUPLICATE:
+            case OkRxWebSocketSequenceWindow.OUT_OF_WINDOW:
+                if (!dropDuplicates) {
+                    return true;
+                }
+                duplicateMessagesCount.incrementAndGet();
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Closes the previously opened WebSocket
+     *
+     * @return {@link Completable} for operation completion
+     */
+    public Completable close() {
+        return Completable.fromAction(new Action0() {
+            @Override
+            public void call() {
+                closeWebsocket();
+            }
+        }).compose(completableSchedulers());
+    }
+
+    private void closeWebsocket() {
+        closeRequested = true;
+        if (outboxWriter != null) {
+            outboxWriter.close();
+        }
+        Subscription pendingReconnect = reconnectSubscription;
+        if (pendingReconnect != null) {
+            pendingReconnect.unsubscribe();
+        }
+        WebSocket socket = webSocket;
+        if (socket != null) {
+            socket.close(1000, "Socket closed by client");
+        } else if (stateMachine.get() == OkRxWebSocketState.RECONNECTING) {
+            // waiting for a reconnection: complete the session
+            onSocketClosed(sessionEmitter, 1000, "Socket closed by client");
+        }
+    }
+
+    /**
+     * Writes a {@link String} or {@link ByteString} message, queueing it while the socket is opening
+     * or reconnecting, or while previously queued messages are still waiting to be written.
+     *
+     * @param subscriber subscriber completed once the message is written, or failed if it is dropped
+     *                   while queued; may be null
+     * @throws UnsupportedOperationException if the socket is closed
+     */
+    private void write(Object message, CompletableSubscriber subscriber) {
+        boolean written = false;
+        synchronized (outboundQueue) {
+            OkRxWebSocketState state = stateMachine.get();
+            WebSocket socket = webSocket;
+            if (state == OkRxWebSocketState.OPENED && socket != null) {
+                if (outboundQueue.isEmpty() && !outboundQueue.isBatching()) {
+                    boolean accepted = message instanceof String
+                            ? socket.send((String) message)
+                            : socket.send((ByteString) message);
+                    if (!accepted) {
+                        throw new IllegalStateException("Message rejected: the WebSocket is closing or its outgoing buffer is full");
+                    }
+                    written = true;
+                } else {
+                    outboundQueue.offer(message, subscriber);
+                    if (outboundQueue.isBatching()) {
+                        scheduleFlush();
+                    } else {
+                        outboundQueue.flush(socket);
+                    }
+                }
+            } else if (state == OkRxWebSocketState.OPENING || state == OkRxWebSocketState.RECONNECTING) {
+                outboundQueue.offer(message, subscriber);
+            } else {
+                throw new UnsupportedOperationException("OkRxWebSocket is closed");
+            }
+        }
+        outboundQueue.notifySubscribers();
+        if (written && metrics != null) {
+            // queued messages are recorded by the queue, once per frame actually written
+            metrics.onFrameSent(OkRxWebSocketOutboundQueue.sizeOf(message));
+        }
+        if (written && subscriber != null) {
+            subscriber.onCompleted();
+        }
+    }
+
+    /**
+     * Writes the given message immediately, after any queued message, bypassing batching.
+     *
+     * @throws UnsupportedOperationException if the socket is not opened
+     * @throws IllegalStateException         if the message was rejected by the WebSocket
+     */
+    void writeNow(ByteString message) {
+        synchronized (outboundQueue) {
+            WebSocket socket = webSocket;
+            if (stateMachine.get() != OkRxWebSocketState.OPENED || socket == null) {
+                throw new UnsupportedOperationException("OkRxWebSocket is not opened");
+            }
+            outboundQueue.flush(socket);
+            if (!socket.send(message)) {
+                throw new IllegalStateException("Message rejected: the WebSocket is closing or its outgoing buffer is full");
+            }
+            if (metrics != null) {
+                metrics.onFrameSent(message.size());
+            }
+        }
+        outboundQueue.notifySubscribers();
+    }
+
+    private OkRxWebSocketOutboxWriter.Transmitter outboxTransmitter() {
+        return new OkRxWebSocketOutboxWriter.Transmitter() {
+            @Override
+            public boolean isOpened() {
+                return stateMachine.get() == OkRxWebSocketState.OPENED;
+            }
+
+            @Override
+            public boolean write(Object message) {
+                synchronized (outboundQueue) {
+                    WebSocket socket = webSocket;
+                    if (stateMachine.get() != OkRxWebSocketState.OPENED || socket == null) {
+                        return false;
+                    }
+                    outboundQueue.flush(socket);
+                    boolean accepted = message instanceof String
+                            ? socket.send((String) message)
+                            : socket.send((ByteString) message);
+                    if (!accepted) {
+                        return false;
+                    }
+                }
+                outboundQueue.notifySubscribers();
+                if (metrics != null) {
+                    metrics.onFrameSent(OkRxWebSocketOutboundQueue.sizeOf(message));
+                }
+                return true;
+            }
+
+            @Override
+            public long queueSize() {
+                return OkRxWebSocket.this.queueSize();
+            }
+        };
+    }
+
+    /**
+     * @return the size in bytes of the messages enqueued by the WebSocket and not yet transmitted
+     */
+    public long queueSize() {
+        WebSocket socket = webSocket;
+        return socket != null ? socket.queueSize() : 0;
+    }
+
+    private void scheduleFlush() {
+        if (flushSubscription != null && !flushSubscription.isUnsubscribed()) {
+            return;
+        }
+        flushSubscription = Observable.timer(outboundQueue.getFlushIntervalMillis(), TimeUnit.MILLISECONDS, socketScheduler)
+                .subscribe(new Action1<Long>() {
+                    @Override
+                    public void call(Long tick) {
+                        synchronized (outboundQueue) {
+                            WebSocket socket = webSocket;
+                            if (stateMachine.get() == OkRxWebSocketState.OPENED && socket != null) {
+                                outboundQueue.flush(socket);
+                            }
+                        }
+                        outboundQueue.notifySubscribers();
+                    }
+                });
+    }
+
+    /**
+     * Writes the given message into the WebSocket. While the socket is opening or reconnecting the message
+     * is queued, and the {@link Completable} completes once it is written, or fails if the socket closes first.<br/>
+     * When the outbox is enabled in the {@link Builder}, the message is appended to the outbox instead,
+     * and the {@link Completable} completes once the message is stored on disk.
+     *
+     * @param message message to write
+     * @return {@link Completable} for operation completion
+     */
+    public Completable send(final String message) {
+        if (outboxWriter != null) {
+            return outboxWriter.enqueue(message).compose(completableSchedulers());
+        }
+        return sendMessage(message).compose(completableSchedulers());
+    }
+
+    /**
+     * Writes the given byte array message into the WebSocket. While the socket is opening or reconnecting the message
+     * is queued, and the {@link Completable} completes once it is written, or fails if the socket closes first.<br/>
+     * When the outbox is enabled in the {@link Builder}, the message is appended to the outbox instead,
+     * and the {@link Completable} completes once the message is stored on disk.
+     *
+     * @param message message to write
+     * @return {@link Completable} for operation completion
+     */
+    public Completable send(final byte[] message) {
+        if (outboxWriter != null) {
+            return outboxWriter.enqueue(ByteString.of(message)).compose(completableSchedulers());
+        }
+        return sendMessage(ByteString.of(message)).compose(completableSchedulers());
+    }
+
+    /**
+     * Writes the given value into the WebSocket as a binary message, encoded with the codec registered
+     * for its class in the {@link Builder}, or else for its nearest registered superclass.
+     *
+     * @param value value to write
+     * @return {@link Completable} for operation completion
+     */
+    public <T> Completable sendValue(final T value) {
+        return Completable.defer(new Func0<Completable>() {
+            @Override
+            public Completable call() {
+                return sendMessage(codecs.encode(value));
+            }
+        }).compose(completableSchedulers());
+    }
+
+    /**
+     * @return a {@link Completable} which writes the given {@link String} or {@link ByteString} message,
+     * completing once the message is written into the WebSocket
+     */
+    private Completable sendMessage(final Object message) {
+        return Completable.create(new Completable.OnSubscribe() {
+            @Override
+            public void call(CompletableSubscriber subscriber) {
+                subscriber.onSubscribe(Subscriptions.empty());
+                if (message instanceof String) {
+                    logger.debugPayload(TAG, "Sending message: ", (String) message);
+                } else {
+                    logger.debugPayload(TAG, "Sending message: ", (ByteString) message);
+                }
+                try {
+                    write(message, subscriber);
+                } catch (RuntimeException e) {
+                    subscriber.onError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes every byte array message emitted by the given {@link Observable} into the WebSocket, requesting
+     * new messages only while the outgoing buffer is below the high-water mark configured in the {@link Builder}.<br/>
+     * This prevents bulk writes from exceeding the WebSocket buffer limit, which closes the connection.
+     *
+     * @param messages messages to write
+     * @return {@link Completable} for operation completion
+     */
+    public Completable sendAll(final Observable<byte[]> messages) {
+        return Completable.create(new Completable.OnSubscribe() {
+            @Override
+            public void call(CompletableSubscriber subscriber) {
+                OkRxWebSocketFlowControlledSender sender = new OkRxWebSocketFlowControlledSender(OkRxWebSocket.this,
+                        subscriber, socketScheduler, highWaterMark, lowWaterMark, FLOW_CONTROL_POLL_INTERVAL_MILLIS);
+                subscriber.onSubscribe(sender);
+                messages.map(new Func1<byte[], ByteString>() {
+                    @Override
+                    public ByteString call(byte[] message) {
+                        return ByteString.of(message);
+                    }
+                }).subscribe(sender);
+            }
+        }).compose(completableSchedulers());
+    }
+
+    /**
+     * Writes the content of the given source into the WebSocket as a sequence of chunks, reading the next chunk
+     * only while the outgoing buffer is below the high-water mark configured in the {@link Builder}, so that
+     * the content is never held in memory as a whole. The source is closed once written.<br/>
+     * The other peer reassembles the chunks with {@link #observeStreams(OkRxWebSocketStreamSinkFactory)}.
+     *
+     * @param source content to write
+     * @return {@link Completable} for operation completion
+     */
+    public Completable sendStream(final Source source) {
+        return Completable.create(new Completable.OnSubscribe() {
+            @Override
+            public void call(CompletableSubscriber subscriber) {
+                OkRxWebSocketFlowControlledSender sender = new OkRxWebSocketFlowControlledSender(OkRxWebSocket.this,
+                        subscriber, socketScheduler, highWaterMark, lowWaterMark, FLOW_CONTROL_POLL_INTERVAL_MILLIS);
+                subscriber.onSubscribe(sender);
+                long streamId = nextStreamId.getAndIncrement();
+                if (logger.isDebugEnabled()) {
+                    logger.debug(TAG, "Sending stream %d", streamId);
+                }
+                OkRxWebSocketStreamChunks.chunks(source, streamId, streamChunkSize).subscribe(sender);
+            }
+        }).compose(completableSchedulers());
+    }
+
+    /**
+     * Writes the content of the given {@link InputStream} into the WebSocket as a sequence of chunks.
+     *
+     * @see #sendStream(Source)
+     */
+    public Completable sendStream(InputStream inputStream) {
+        return sendStream(Okio.source(inputStream));
+    }
+
+    /**
+     * Reassembles the streams written by {@link #sendStream(Source)} on the other peer, writing each chunk into
+     * the sink of its stream as soon as it arrives. Chunk frames are not delivered to the other streams
+     * while observed. A stream left incomplete by a disconnection is discarded, as is a stream receiving no chunk
+     * for a minute.
+     *
+     * @param sinkFactory creates the sink of each incoming stream
+     * @return {@link Observable} which emits the id of every completely received stream
+     */
+    public Observable<Long> observeStreams(final OkRxWebSocketStreamSinkFactory sinkFactory) {
+        return Observable.unsafeCreate(new Observable.OnSubscribe<Long>() {
+            @Override
+            public void call(Subscriber<? super Long> subscriber) {
+                final OkRxWebSocketStreamReassembler reassembler = new OkRxWebSocketStreamReassembler(sinkFactory, subscriber,
+                        socketScheduler, logger);
+                if (!streamReassembler.compareAndSet(null, reassembler)) {
+                    subscriber.onError(new IllegalStateException("Incoming streams are already observed"));
+                    return;
+                }
+                subscriber.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        streamReassembler.compareAndSet(reassembler, null);
+                        reassembler.abortAll();
+                    }
+                }));
+            }
+        });
+    }
+
+    private void abortIncomingStreams() {
+        OkRxWebSocketStreamReassembler reassembler = streamReassembler.get();
+        if (reassembler != null) {
+            reassembler.abortAll();
+        }
+    }
+
+    /**
+     * Writes the given message into the WebSocket, and returns an {@link Observable} which emits the
+     * response filtered with the given response matcher function, within the default request timeout
+     *
+     * @param message         message to write
+     * @param responseMatcher function applied to determine the response
+     * @return {@link Observable} for response delivery
+     */
+    public Observable<OkRxWebSocketMessage> send(String message, Func1<OkRxWebSocketMessage, Boolean> responseMatcher) {
+        return send(message, responseMatcher, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the given message into the WebSocket, and returns an {@link Observable} which emits the
+     * response filtered with the given response matcher function
+     *
+     * @param message         message to write
+     * @param responseMatcher function applied to determine the response
+     * @param timeout         time after which the request fails with a {@link java.util.concurrent.TimeoutException},
+     *                        or zero to wait until the socket is closed
+     * @param unit            unit of the timeout
+     * @return {@link Observable} for response delivery
+     */
+    public Observable<OkRxWebSocketMessage> send(final String message, Func1<OkRxWebSocketMessage, Boolean> responseMatcher,
+                                                 long timeout, TimeUnit unit) {
+        return request(awaitMatchingResponse(responseMatcher, new Action0() {
+            @Override
+            public void call() {
+                logger.debugPayload(TAG, "Sending message: ", message);
+                write(message, null);
+            }
+        }), unit.toMillis(timeout));
+    }
+
+    /**
+     * Writes the given byte array message into the WebSocket, and returns an {@link Observable} which emits the
+     * response filtered with the given response matcher function, within the default request timeout
+     *
+     * @param message         message to write
+     * @param responseMatcher function applied to determine the response
+     * @return {@link Observable} for response delivery
+     */
+    public Observable<OkRxWebSocketMessage> send(byte[] message, Func1<OkRxWebSocketMessage, Boolean> responseMatcher) {
+        return send(message, responseMatcher, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the given byte array message into the WebSocket, and returns an {@link Observable} which emits the
+     * response filtered with the given response matcher function
+     *
+     * @param message         message to write
+     * @param responseMatcher function applied to determine the response
+     * @param timeout         time after which the request fails with a {@link java.util.concurrent.TimeoutException},
+     *                        or zero to wait until the socket is closed
+     * @param unit            unit of the timeout
+     * @return {@link Observable} for response delivery
+     */
+    public Observable<OkRxWebSocketMessage> send(final byte[] message, Func1<OkRxWebSocketMessage, Boolean> responseMatcher,
+                                                 long timeout, TimeUnit unit) {
+        return request(awaitMatchingResponse(responseMatcher, new Action0() {
+            @Override
+            public void call() {
+                ByteString byteString = ByteString.of(message);
+                logger.debugPayload(TAG, "Sending message: ", byteString);
+                write(byteString, null);
+            }
+        }), unit.toMillis(timeout));
+    }
+
+    /**
+     * Writes the given byte array message into the WebSocket, and returns an {@link Observable} which emits the
+     * response filtered with the given response matcher function
+     *
+     * @param message         message to write
+     * @param responseType    type of the response in which be parsed
+     * @param responseMatcher function applied to determine the response
+     * @return {@link Observable} for response delivery
+     */
+    public <T> Observable<T> send(final String message, final Class<T> responseType, final Func1<OkRxWebSocketMessage, Boolean> responseMatcher) {
+        return Observable.defer(new Func0<Observable<T>>() {
+            @Override
+            public Observable<T> call() {
+                if (parser == null) {
+                    return Observable.error(new ParserNotImplementedException());
+                }
+                return send(message, responseMatcher).map(parseFunctions.text(responseType));
+            }
+        }).compose(this.<T>observableSchedulers());
+    }
+
+    /**
+     * Writes the given byte array message into the WebSocket, and returns an {@link Observable} which emits the
+     * response filtered with the given response matcher function
+     *
+     * @param message         message to write
+     * @param responseType    type of the response in which be parsed
+     * @param responseMatcher function applied to determine the response
+     * @return {@link Observable} for response delivery
+     */
+    public <T> Observable<T> send(final byte[] message, final Class<T> responseType, final Func1<OkRxWebSocketMessage, Boolean> responseMatcher) {
+        return Observable.defer(new Func0<Observable<T>>() {
+            @Override
+            public Observable<T> call() {
+                if (parser == null) {
+                    return Observable.error(new ParserNotImplementedException());
+                }
+                return send(message, responseMatcher).map(parseFunctions.binary(responseType));
+            }
+        }).compose(this.<T>observableSchedulers());
+    }
+
+    /**
+     * Writes the given message into the WebSocket, and returns an {@link Observable} which emits the
+     * response having the given correlation key, as returned by the configured correlation key extractor,
+     * within the default request timeout
+     *
+     * @param message        message to write
+     * @param correlationKey key identifying the response
+     * @return {@link Observable} for response delivery
+     */
+    public Observable<OkRxWebSocketMessage> send(String message, String correlationKey) {
+        return send(message, correlationKey, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the given message into the WebSocket, and returns an {@link Observable} which emits the
+     * response having the given correlation key, as returned by the configured correlation key extractor
+     *
+     * @param message        message to write
+     * @param correlationKey key identifying the response
+     * @param timeout        time after which the request fails with a {@link java.util.concurrent.TimeoutException},
+     *                       or zero to wait until the socket is closed
+     * @param unit           unit of the timeout
+     * @return {@link Observable} for response delivery
+     */
+    public Observable<OkRxWebSocketMessage> send(final String message, String correlationKey, long timeout, TimeUnit unit) {
+        return request(awaitResponse(correlationKey, new Action0() {
+            @Override
+            public void call() {
+                logger.debugPayload(TAG, "Sending message: ", message);
+                write(message, null);
+            }
+        }), unit.toMillis(timeout));
+    }
+
+    /**
+     * Writes the given byte array message into the WebSocket, and returns an {@link Observable} which emits the
+     * response having the given correlation key, as returned by the configured correlation key extractor,
+     * within the default request timeout
+     *
+     * @param message        message to write
+     * @param correlationKey key identifying the response
+     * @return {@link Observable} for response delivery
+     */
+    public Observable<OkRxWebSocketMessage> send(byte[] message, String correlationKey) {
+        return send(message, correlationKey, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the given byte array message into the WebSocket, and returns an {@link Observable} which emits the
+     * response having the given correlation key, as returned by the configured correlation key extractor
+     *
+     * @param message        message to write
+     * @param correlationKey key identifying the response
+     * @param timeout        time after which the request fails with a {@link java.util.concurrent.TimeoutException},
+     *                       or zero to wait until the socket is closed
+     * @param unit           unit of the timeout
+     * @return {@link Observable} for response delivery
+     */
+    public Observable<OkRxWebSocketMessage> send(final byte[] message, String correlationKey, long timeout, TimeUnit unit) {
+        return request(awaitResponse(correlationKey, new Action0() {
+            @Override
+            public void call() {
+                ByteString byteString = ByteString.of(message);
+                logger.debugPayload(TAG, "Sending message: ", byteString);
+                write(byteString, null);
+            }
+        }), unit.toMillis(timeout));
+    }
+
+    /**
+     * Writes the given message into the WebSocket, and returns an {@link Observable} which emits the
+     * response having the given correlation key, parsed in the given type
+     *
+     * @param message        message to write
+     * @param responseType   type of the response in which be parsed
+     * @param correlationKey key identifying the response
+     * @return {@link Observable} for response delivery
+     */
+    public <T> Observable<T> send(final String message, final Class<T> responseType, final String correlationKey) {
+        return Observable.defer(new Func0<Observable<T>>() {
+            @Override
+            public Observable<T> call() {
+                if (parser == null) {
+                    return Observable.error(new ParserNotImplementedException());
+                }
+                return send(message, correlationKey).map(parseFunctions.text(responseType));
+            }
+        }).compose(this.<T>observableSchedulers());
+    }
+
+    /**
+     * Writes the given byte array message into the WebSocket, and returns an {@link Observable} which emits the
+     * response having the given correlation key, parsed in the given type
+     *
+     * @param message        message to write
+     * @param responseType   type of the response in which be parsed
+     * @param correlationKey key identifying the response
+     * @return {@link Observable} for response delivery
+     */
+    public <T> Observable<T> send(final byte[] message, final Class<T> responseType, final String correlationKey) {
+        return Observable.defer(new Func0<Observable<T>>() {
+            @Override
+            public Observable<T> call() {
+                if (parser == null) {
+                    return Observable.error(new ParserNotImplementedException());
+                }
+                return send(message, correlationKey).map(parseFunctions.binary(responseType));
+            }
+        }).compose(this.<T>observableSchedulers());
+    }
+
+    /**
+     * Applies the in-flight limit and the timeout to the given request.
+     */
+    private Observable<OkRxWebSocketMessage> request(Observable<OkRxWebSocketMessage> request, long timeoutMillis) {
+        // the timeout is applied inside the limiter, so that it only runs once the request holds a permit
+        if (timeoutMillis > 0) {
+            request = request.timeout(timeoutMillis, TimeUnit.MILLISECONDS, socketScheduler);
+        }
+        if (requestLimiter != null) {
+            request = requestLimiter.limit(request, socketScheduler);
+        }
+        return request.compose(this.<OkRxWebSocketMessage>observableSchedulers());
+    }
+
+    /**
+     * Subscribes a waiter for the first message accepted by the given matcher, then performs the write.
+     * The waiter fails if the socket is closed before the response is received.
+     */
+    private Observable<OkRxWebSocketMessage> awaitMatchingResponse(Func1<OkRxWebSocketMessage, Boolean> responseMatcher,
+                                                                   Action0 writeAction) {
+        Observable<OkRxWebSocketMessage> response = socketMessagesSubject.filter(responseMatcher).filter(new Func1<OkRxWebSocketMessage, Boolean>() {
+            @Override
+            public Boolean call(OkRxWebSocketMessage okRxWebSocketMessage) {
+                return okRxWebSocketMessage.getMessageType() == OkRxWebSocketMessageType.NEW_MESSAGE;
+            }
+        }).mergeWith(requestFailuresSubject.flatMap(new Func1<Throwable, Observable<OkRxWebSocketMessage>>() {
+            @Override
+            public Observable<OkRxWebSocketMessage> call(Throwable throwable) {
+                return Observable.error(throwable);
+            }
+        })).take(1).mergeWith(Completable.fromAction(writeAction).<OkRxWebSocketMessage>toObservable());
+        return metrics != null ? countPendingMatcherRequest(response) : response;
+    }
+
+    /**
+     * Counts the given request in the pending requests gauge until it terminates or is unsubscribed.
+     */
+    private Observable<OkRxWebSocketMessage> countPendingMatcherRequest(final Observable<OkRxWebSocketMessage> request) {
+        return Observable.defer(new Func0<Observable<OkRxWebSocketMessage>>() {
+            @Override
+            public Observable<OkRxWebSocketMessage> call() {
+                pendingMatcherRequests.incrementAndGet();
+                Action0 release = new Action0() {
+
+                    private final AtomicBoolean released = new AtomicBoolean();
+
+                    @Override
+                    public void call() {
+                        if (released.compareAndSet(false, true)) {
+                            pendingMatcherRequests.decrementAndGet();
+                        }
+                    }
+                };
+                return request.doOnTerminate(release).doOnUnsubscribe(release);
+            }
+        });
+    }
+
+    /**
+     * Registers a waiter for the response with the given correlation key, then performs the write.
+     * The waiter is registered before writing so that a fast response cannot be missed.
+     */
+    private Observable<OkRxWebSocketMessage> awaitResponse(final String correlationKey, final Action0 writeAction) {
+        return Observable.create(new Action1<Emitter<OkRxWebSocketMessage>>() {
+            @Override
+            public void call(final Emitter<OkRxWebSocketMessage> emitter) {
+                if (!responseRouter.isEnabled()) {
+                    emitter.onError(new IllegalStateException("Unable to correlate responses without a correlation key extractor"));
+                    return;
+                }
+                if (!responseRouter.register(correlationKey, emitter, OkRxWebSocket.this)) {
+                    emitter.onError(new IllegalStateException("A request with correlation key " + correlationKey + " is already pending"));
+                    return;
+                }
+                emitter.setCancellation(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        responseRouter.unregister(correlationKey, emitter);
+                    }
+                });
+                try {
+                    writeAction.call();
+                } catch (RuntimeException e) {
+                    responseRouter.unregister(correlationKey, emitter);
+                    emitter.onError(e);
+                }
+            }
+        }, Emitter.BackpressureMode.BUFFER);
+    }
+
+    private <T> Observable<T> applyOverflowStrategy(Observable<T> observable) {
+        Action0 countDropped = new Action0() {
+            @Override
+            public void call() {
+                droppedMessagesCount.incrementAndGet();
+            }
+        };
+        switch (overflowStrategy) {
+            case BUFFER:
+                return observable.onBackpressureBuffer(overflowCapacity, countDropped, BackpressureOverflow.ON_OVERFLOW_ERROR);
+            case DROP_OLDEST:
+                return observable.onBackpressureBuffer(overflowCapacity, countDropped, BackpressureOverflow.ON_OVERFLOW_DROP_OLDEST);
+            case DROP_LATEST:
+                return observable.onBackpressureBuffer(overflowCapacity, countDropped, BackpressureOverflow.ON_OVERFLOW_DROP_LATEST);
+            case LATEST:
+                // a single slot buffer dropping the oldest item conflates like onBackpressureLatest, while counting drops
+                return observable.onBackpressureBuffer(1, countDropped, BackpressureOverflow.ON_OVERFLOW_DROP_OLDEST);
+            case ERROR:
+                return observable.onBackpressureDrop(new Action1<T>() {
+                    @Override
+                    public void call(T t) {
+                        droppedMessagesCount.incrementAndGet();
+                        throw new IllegalStateException("Subscriber is not ready to receive socket messages",
+                                new MissingBackpressureException());
+                    }
+                });
+            default:
+                return observable;
+        }
     }
 
     private <T> Observable.Transformer<T, T> observableSchedulers() {
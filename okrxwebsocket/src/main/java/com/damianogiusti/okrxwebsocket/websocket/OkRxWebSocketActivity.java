@@ -34,7 +34,18 @@ public final class OkRxWebSocketActivity extends OkRxWebSocketMessage {
         return websocketActivity;
     }
 
+    static OkRxWebSocketActivity createForFailedWebsocket(Throwable error, Response response) {
+        OkRxWebSocketActivity websocketActivity = new OkRxWebSocketActivity();
+        websocketActivity.setResponse(response);
+        websocketActivity.setResponseString(error.getMessage());
+        websocketActivity.setCode(response != null ? response.code() : 0);
+        websocketActivity.setMessageType(OkRxWebSocketMessageType.FAILED);
+        websocketActivity.error = error;
+        return websocketActivity;
+    }
+
     private Response response;
+    private Throwable error;
 
     protected OkRxWebSocketActivity() {}
 
@@ -46,6 +57,13 @@ public final class OkRxWebSocketActivity extends OkRxWebSocketMessage {
         this.response = response;
     }
 
+    /**
+     * @return the cause of the failure, for the {@link OkRxWebSocketMessageType#FAILED} activity
+     */
+    public Throwable getError() {
+        return error;
+    }
+
     @Override
     public String toString() {
         if (response != null) {
@@ -0,0 +1,106 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import com.damianogiusti.okrxwebsocket.codec.OkRxWebSocketCodec;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * Codecs registered by type. Encoded messages start with a marker followed by the varint id of their type,
+ * so that each stream decodes only the messages of its own type, and other binary messages are not
+ * mistaken for encoded ones.
+ */
+final class OkRxWebSocketCodecRegistry {
+
+    private static final ByteString FRAME_MARKER = ByteString.of((byte) 0xC0, (byte) 0xDE);
+
+    // filled while building the socket, read-only afterwards
+    private final Map<Class<?>, Registration<?>> registrationsByType = new HashMap<>();
+    private final Map<Integer, Registration<?>> registrationsById = new HashMap<>();
+
+    <T> void register(int typeId, Class<T> type, OkRxWebSocketCodec<T> codec) {
+        if (typeId < 0) {
+            throw new IllegalArgumentException("Type id must not be negative");
+        }
+        if (registrationsById.containsKey(typeId)) {
+            throw new IllegalArgumentException("Type id " + typeId + " is already registered");
+        }
+        if (registrationsByType.containsKey(type)) {
+            throw new IllegalArgumentException("Type " + type.getName() + " is already registered");
+        }
+        Registration<T> registration = new Registration<>(typeId, codec);
+        registrationsByType.put(type, registration);
+        registrationsById.put(typeId, registration);
+    }
+
+    boolean isRegistered(Class<?> type) {
+        return registrationsByType.containsKey(type);
+    }
+
+    /**
+     * Encodes the given value with the codec of its class or, if none, of its nearest registered superclass.
+     * Interfaces are not looked up.
+     *
+     * @throws IllegalArgumentException if no codec is registered for the class of the value
+     */
+    @SuppressWarnings("unchecked")
+    <T> ByteString encode(T value) {
+        Registration<T> registration = null;
+        for (Class<?> type = value.getClass(); type != null && registration == null; type = type.getSuperclass()) {
+            registration = (Registration<T>) registrationsByType.get(type);
+        }
+        if (registration == null) {
+            throw new IllegalArgumentException("No codec registered for " + value.getClass().getName());
+        }
+        ByteString payload = registration.codec.encode(value);
+        Buffer buffer = new Buffer().write(FRAME_MARKER);
+        int typeId = registration.typeId;
+        while ((typeId & ~0x7F) != 0) {
+            buffer.writeByte((typeId & 0x7F) | 0x80);
+            typeId >>>= 7;
+        }
+        return buffer.writeByte(typeId).write(payload).readByteString();
+    }
+
+    /**
+     * @return the value encoded in the given message, or null if it is not a message of the given type
+     * @throws IllegalArgumentException if the payload cannot be decoded by the codec of the given type
+     */
+    @SuppressWarnings("unchecked")
+    <T> T decode(Class<T> type, ByteString message) {
+        Registration<T> registration = (Registration<T>) registrationsByType.get(type);
+        if (!message.rangeEquals(0, FRAME_MARKER, 0, FRAME_MARKER.size())) {
+            return null; // not an encoded message
+        }
+        int typeId = 0;
+        int position = FRAME_MARKER.size();
+        for (int shift = 0; ; shift += 7) {
+            if (position == message.size() || shift > 28) {
+                return null; // not an encoded message
+            }
+            byte b = message.getByte(position++);
+            typeId |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (registration == null || typeId != registration.typeId) {
+            return null;
+        }
+        return registration.codec.decode(message.substring(position));
+    }
+
+    private static final class Registration<T> {
+
+        final int typeId;
+        final OkRxWebSocketCodec<T> codec;
+
+        Registration(int typeId, OkRxWebSocketCodec<T> codec) {
+            this.typeId = typeId;
+            this.codec = codec;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.zip.Deflater;
+
+/**
+ * Configuration of the compression of binary messages.<br/>
+ * The OkHttp WebSocket does not negotiate the permessage-deflate extension, so messages are compressed
+ * by OkRxWebSocket itself: every binary frame starts with a flag byte telling whether the payload is
+ * deflated, therefore both peers must enable it with the same dictionary. Text frames are never compressed.
+ */
+public final class OkRxWebSocketCompression {
+
+    private int minSize = 256;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private byte[] dictionary;
+    private long maxInflatedSize = 16 * 1024 * 1024; // the largest message accepted by OkHttp
+
+    public static class Builder {
+
+        private OkRxWebSocketCompression instance = new OkRxWebSocketCompression();
+
+        /**
+         * Sets the size, in bytes, below which messages are sent uncompressed.
+         */
+        public Builder minSize(int minSize) {
+            if (minSize < 0) {
+                throw new IllegalArgumentException("Min size must not be negative");
+            }
+            instance.minSize = minSize;
+            return this;
+        }
+
+        /**
+         * Sets the compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}.
+         */
+        public Builder level(int level) {
+            if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+                throw new IllegalArgumentException("Invalid compression level " + level);
+            }
+            instance.level = level;
+            return this;
+        }
+
+        /**
+         * Sets a preset dictionary holding the byte sequences which are common among the messages,
+         * greatly improving the compression of small and repetitive frames.
+         */
+        public Builder dictionary(byte[] dictionary) {
+            instance.dictionary = dictionary.clone();
+            return this;
+        }
+
+        /**
+         * Sets the maximum size, in bytes, of a decompressed message: larger messages are dropped, so that
+         * a small frame cannot inflate into an unbounded amount of memory.
+         */
+        public Builder maxInflatedSize(long maxInflatedSize) {
+            if (maxInflatedSize <= 0) {
+                throw new IllegalArgumentException("Max inflated size must be greater than zero");
+            }
+            instance.maxInflatedSize = maxInflatedSize;
+            return this;
+        }
+
+        public OkRxWebSocketCompression build() {
+            return instance;
+        }
+    }
+
+    private OkRxWebSocketCompression() {}
+
+    int getMinSize() {
+        return minSize;
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    byte[] getDictionary() {
+        return dictionary;
+    }
+
+    long getMaxInflatedSize() {
+        return maxInflatedSize;
+    }
+}
@@ -0,0 +1,128 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import okhttp3.Request;
+import okhttp3.WebSocket;
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * Compresses and decompresses the binary frames of a socket, as described by {@link OkRxWebSocketCompression}.
+ */
+final class OkRxWebSocketCompressor {
+
+    private static final byte FLAG_RAW = 0;
+    private static final byte FLAG_DEFLATED = 1;
+    private static final int CHUNK_SIZE = 8192;
+
+    private final OkRxWebSocketCompression compression;
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private final byte[] deflateChunk = new byte[CHUNK_SIZE];
+    private final byte[] inflateChunk = new byte[CHUNK_SIZE];
+
+    OkRxWebSocketCompressor(OkRxWebSocketCompression compression) {
+        this.compression = compression;
+        this.deflater = new Deflater(compression.getLevel(), true);
+        this.inflater = new Inflater(true);
+    }
+
+    synchronized ByteString compress(ByteString message) {
+        if (message.size() >= compression.getMinSize()) {
+            deflater.reset();
+            if (compression.getDictionary() != null) {
+                deflater.setDictionary(compression.getDictionary());
+            }
+            deflater.setInput(message.toByteArray());
+            deflater.finish();
+            Buffer frame = new Buffer().writeByte(FLAG_DEFLATED);
+            while (!deflater.finished()) {
+                frame.write(deflateChunk, 0, deflater.deflate(deflateChunk));
+            }
+            if (frame.size() <= message.size()) {
+                return frame.readByteString();
+            }
+        }
+        return new Buffer().writeByte(FLAG_RAW).write(message).readByteString();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the frame was not written by a compressor with the same configuration,
+     *                                  or inflates to more than the maximum size
+     */
+    synchronized ByteString decompress(ByteString frame) {
+        if (frame.size() == 0) {
+            throw new IllegalArgumentException("Malformed compressed frame: missing flag");
+        }
+        byte flag = frame.getByte(0);
+        if (flag == FLAG_RAW) {
+            return frame.substring(1);
+        }
+        if (flag != FLAG_DEFLATED) {
+            throw new IllegalArgumentException("Malformed compressed frame: unknown flag " + flag);
+        }
+        inflater.reset();
+        if (compression.getDictionary() != null) {
+            inflater.setDictionary(compression.getDictionary());
+        }
+        byte[] input = frame.toByteArray();
+        inflater.setInput(input, 1, input.length - 1);
+        Buffer message = new Buffer();
+        try {
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(inflateChunk);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Malformed compressed frame: truncated payload");
+                }
+                if (message.size() + inflated > compression.getMaxInflatedSize()) {
+                    throw new IllegalArgumentException("Malformed compressed frame: inflates to more than "
+                            + compression.getMaxInflatedSize() + " bytes");
+                }
+                message.write(inflateChunk, 0, inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Malformed compressed frame: " + e.getMessage(), e);
+        }
+        return message.readByteString();
+    }
+
+    /**
+     * @return a {@link WebSocket} compressing the binary messages before writing them into the given one
+     */
+    WebSocket wrap(final WebSocket webSocket) {
+        return new WebSocket() {
+            @Override
+            public Request request() {
+                return webSocket.request();
+            }
+
+            @Override
+            public long queueSize() {
+                return webSocket.queueSize();
+            }
+
+            @Override
+            public boolean send(String text) {
+                return webSocket.send(text);
+            }
+
+            @Override
+            public boolean send(ByteString bytes) {
+                return webSocket.send(compress(bytes));
+            }
+
+            @Override
+            public boolean close(int code, String reason) {
+                return webSocket.close(code, reason);
+            }
+
+            @Override
+            public void cancel() {
+                webSocket.cancel();
+            }
+        };
+    }
+}
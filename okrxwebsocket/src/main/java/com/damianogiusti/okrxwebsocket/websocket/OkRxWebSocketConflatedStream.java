@@ -0,0 +1,252 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Observable;
+import rx.Producer;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Keeps the latest message of each key received by a socket, so that slow subscribers receive only the
+ * most recent value of every key instead of all the intermediate ones.<br/>
+ * Memory is bounded by the number of keys: each subscriber only tracks which keys changed since it
+ * last received them.
+ */
+public final class OkRxWebSocketConflatedStream implements Subscription {
+
+    private final Func1<OkRxWebSocketMessage, String> keyExtractor;
+    private final Scheduler scheduler;
+    private final ConcurrentMap<String, OkRxWebSocketMessage> latestMessages = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Consumer> consumers = new CopyOnWriteArrayList<>();
+    private final Subscription upstream;
+
+    OkRxWebSocketConflatedStream(Observable<OkRxWebSocketMessage> messages,
+                                 Func1<OkRxWebSocketMessage, String> keyExtractor, Scheduler scheduler) {
+        this.keyExtractor = keyExtractor;
+        this.scheduler = scheduler;
+        this.upstream = messages.subscribe(new Action1<OkRxWebSocketMessage>() {
+            @Override
+            public void call(OkRxWebSocketMessage message) {
+                onMessage(message);
+            }
+        });
+    }
+
+    /**
+     * Returns an {@link Observable} which emits the latest message of every key changed since the previous
+     * emission, as fast as the subscriber requests them. The current values are emitted first.
+     */
+    public Observable<OkRxWebSocketMessage> observe() {
+        return Observable.unsafeCreate(new Observable.OnSubscribe<OkRxWebSocketMessage>() {
+            @Override
+            public void call(Subscriber<? super OkRxWebSocketMessage> subscriber) {
+                final PacedConsumer consumer = new PacedConsumer(subscriber);
+                register(consumer);
+                subscriber.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        consumers.remove(consumer);
+                    }
+                }));
+                subscriber.setProducer(consumer);
+            }
+        });
+    }
+
+    /**
+     * Returns an {@link Observable} which emits, at every interval, the latest message of each key changed
+     * since the previous emission. Intervals without changes are skipped.
+     */
+    public Observable<Map<String, OkRxWebSocketMessage>> sample(final long interval, final TimeUnit unit) {
+        return Observable.using(new Func0<Consumer>() {
+            @Override
+            public Consumer call() {
+                Consumer consumer = new Consumer();
+                register(consumer);
+                return consumer;
+            }
+        }, new Func1<Consumer, Observable<Map<String, OkRxWebSocketMessage>>>() {
+            @Override
+            public Observable<Map<String, OkRxWebSocketMessage>> call(final Consumer consumer) {
+                return Observable.interval(interval, interval, unit, scheduler)
+                        .map(new Func1<Long, Map<String, OkRxWebSocketMessage>>() {
+                            @Override
+                            public Map<String, OkRxWebSocketMessage> call(Long tick) {
+                                return consumer.pollAll();
+                            }
+                        })
+                        .filter(new Func1<Map<String, OkRxWebSocketMessage>, Boolean>() {
+                            @Override
+                            public Boolean call(Map<String, OkRxWebSocketMessage> changes) {
+                                return !changes.isEmpty();
+                            }
+                        })
+                        .onBackpressureLatest();
+            }
+        }, new Action1<Consumer>() {
+            @Override
+            public void call(Consumer consumer) {
+                consumers.remove(consumer);
+            }
+        });
+    }
+
+    /**
+     * @return the latest message of every key
+     */
+    public Map<String, OkRxWebSocketMessage> snapshot() {
+        return Collections.unmodifiableMap(new HashMap<>(latestMessages));
+    }
+
+    /**
+     * @return the latest message of the given key, or null if none was received
+     */
+    public OkRxWebSocketMessage get(String key) {
+        return latestMessages.get(key);
+    }
+
+    /**
+     * Stops caching the messages of the socket.
+     */
+    @Override
+    public void unsubscribe() {
+        upstream.unsubscribe();
+    }
+
+    @Override
+    public boolean isUnsubscribed() {
+        return upstream.isUnsubscribed();
+    }
+
+    private void onMessage(OkRxWebSocketMessage message) {
+        if (message.getMessageType() != OkRxWebSocketMessageType.NEW_MESSAGE) {
+            return;
+        }
+        String key = keyExtractor.call(message);
+        if (key == null) {
+            return;
+        }
+        latestMessages.put(key, message);
+        for (Consumer consumer : consumers) {
+            consumer.onChanged(key);
+        }
+    }
+
+    private void register(Consumer consumer) {
+        consumers.add(consumer);
+        for (String key : latestMessages.keySet()) {
+            consumer.onChanged(key);
+        }
+    }
+
+    /**
+     * Keys changed since a subscriber last received them, in the order they first changed.
+     */
+    private class Consumer {
+
+        private final Set<String> changedKeys = new LinkedHashSet<>();
+
+        void onChanged(String key) {
+            synchronized (changedKeys) {
+                changedKeys.add(key);
+            }
+        }
+
+        /**
+         * @return the latest message of the first changed key, or null if no key changed
+         */
+        OkRxWebSocketMessage poll() {
+            synchronized (changedKeys) {
+                Iterator<String> iterator = changedKeys.iterator();
+                if (!iterator.hasNext()) {
+                    return null;
+                }
+                String key = iterator.next();
+                iterator.remove();
+                return latestMessages.get(key);
+            }
+        }
+
+        Map<String, OkRxWebSocketMessage> pollAll() {
+            Map<String, OkRxWebSocketMessage> changes = new LinkedHashMap<>();
+            synchronized (changedKeys) {
+                for (String key : changedKeys) {
+                    changes.put(key, latestMessages.get(key));
+                }
+                changedKeys.clear();
+            }
+            return changes;
+        }
+    }
+
+    /**
+     * Emits the changed keys while the subscriber has outstanding requests.
+     */
+    private final class PacedConsumer extends Consumer implements Producer {
+
+        private final Subscriber<? super OkRxWebSocketMessage> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger draining = new AtomicInteger();
+
+        PacedConsumer(Subscriber<? super OkRxWebSocketMessage> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = requested.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n; // unbounded on overflow
+            } while (!requested.compareAndSet(current, next));
+            drain();
+        }
+
+        @Override
+        void onChanged(String key) {
+            super.onChanged(key);
+            drain();
+        }
+
+        private void drain() {
+            if (draining.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (requested.get() > 0 && !subscriber.isUnsubscribed()) {
+                    OkRxWebSocketMessage message = poll();
+                    if (message == null) {
+                        break;
+                    }
+                    if (requested.get() != Long.MAX_VALUE) {
+                        requested.decrementAndGet();
+                    }
+                    subscriber.onNext(message);
+                }
+            } while (draining.decrementAndGet() != 0);
+        }
+    }
+}
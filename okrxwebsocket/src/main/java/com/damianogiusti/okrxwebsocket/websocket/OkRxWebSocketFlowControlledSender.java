@@ -0,0 +1,79 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.concurrent.TimeUnit;
+
+import okio.ByteString;
+import rx.CompletableSubscriber;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.MultipleAssignmentSubscription;
+
+/**
+ * Writes the upstream messages one at a time, requesting the next one only while the WebSocket
+ * outgoing buffer is below the high-water mark. Once the mark is reached, the buffer is polled until
+ * it drains below the low-water mark, since OkHttp does not notify when its buffer is drained.
+ */
+final class OkRxWebSocketFlowControlledSender extends Subscriber<ByteString> {
+
+    private final OkRxWebSocket socket;
+    private final CompletableSubscriber downstream;
+    private final Scheduler.Worker worker;
+    private final long highWaterMark;
+    private final long lowWaterMark;
+    private final long pollIntervalMillis;
+
+    OkRxWebSocketFlowControlledSender(OkRxWebSocket socket, CompletableSubscriber downstream, Scheduler scheduler,
+                                      long highWaterMark, long lowWaterMark, long pollIntervalMillis) {
+        this.socket = socket;
+        this.downstream = downstream;
+        this.worker = scheduler.createWorker();
+        this.highWaterMark = highWaterMark;
+        this.lowWaterMark = lowWaterMark;
+        this.pollIntervalMillis = pollIntervalMillis;
+        add(worker);
+    }
+
+    @Override
+    public void onStart() {
+        request(1);
+    }
+
+    @Override
+    public void onNext(ByteString message) {
+        try {
+            socket.writeNow(message);
+        } catch (RuntimeException e) {
+            unsubscribe();
+            downstream.onError(e);
+            return;
+        }
+        if (socket.queueSize() < highWaterMark) {
+            request(1);
+        } else {
+            // created before scheduling, since the first poll can run before schedulePeriodically returns
+            final MultipleAssignmentSubscription pollSubscription = new MultipleAssignmentSubscription();
+            pollSubscription.set(worker.schedulePeriodically(new Action0() {
+                @Override
+                public void call() {
+                    if (!pollSubscription.isUnsubscribed() && socket.queueSize() <= lowWaterMark) {
+                        pollSubscription.unsubscribe();
+                        request(1);
+                    }
+                }
+            }, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Override
+    public void onError(Throwable e) {
+        unsubscribe();
+        downstream.onError(e);
+    }
+
+    @Override
+    public void onCompleted() {
+        unsubscribe();
+        downstream.onCompleted();
+    }
+}
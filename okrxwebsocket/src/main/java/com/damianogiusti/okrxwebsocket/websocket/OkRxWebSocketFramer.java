@@ -0,0 +1,15 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.List;
+
+import okio.ByteString;
+
+/**
+ * Coalesces many outgoing messages into a single WebSocket frame when batching is enabled.
+ */
+public interface OkRxWebSocketFramer {
+
+    String frameText(List<String> messages);
+
+    ByteString frameBinary(List<ByteString> messages);
+}
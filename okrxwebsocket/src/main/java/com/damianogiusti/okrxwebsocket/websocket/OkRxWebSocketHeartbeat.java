@@ -0,0 +1,90 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.concurrent.TimeUnit;
+
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+/**
+ * Configuration of the application-level heartbeat: a ping message is sent at a fixed interval,
+ * and the connection is considered lost when too many consecutive pings are not answered.
+ */
+public final class OkRxWebSocketHeartbeat {
+
+    private long intervalMillis = 5000;
+    private int maxMissedPongs = 2;
+    private int sampleWindow = 128;
+    private Func0<String> pingPayload;
+    private Func1<OkRxWebSocketMessage, Boolean> pongMatcher;
+
+    public static class Builder {
+
+        private OkRxWebSocketHeartbeat instance = new OkRxWebSocketHeartbeat();
+
+        /**
+         * @param pingPayload function creating the payload of each ping
+         * @param pongMatcher function recognizing the pong messages, which are not delivered to the subscribers
+         */
+        public Builder(Func0<String> pingPayload, Func1<OkRxWebSocketMessage, Boolean> pongMatcher) {
+            instance.pingPayload = pingPayload;
+            instance.pongMatcher = pongMatcher;
+        }
+
+        public Builder interval(long interval, TimeUnit unit) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("Heartbeat interval must be greater than zero");
+            }
+            instance.intervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * Sets the number of consecutive unanswered pings after which the connection is considered lost,
+         * and closed with a failure so that the reconnect policy, if any, can reopen it.
+         */
+        public Builder maxMissedPongs(int maxMissedPongs) {
+            if (maxMissedPongs <= 0) {
+                throw new IllegalArgumentException("Max missed pongs must be greater than zero");
+            }
+            instance.maxMissedPongs = maxMissedPongs;
+            return this;
+        }
+
+        /**
+         * Sets the number of most recent round-trip time samples used to compute the percentiles.
+         */
+        public Builder sampleWindow(int sampleWindow) {
+            if (sampleWindow <= 0) {
+                throw new IllegalArgumentException("Sample window must be greater than zero");
+            }
+            instance.sampleWindow = sampleWindow;
+            return this;
+        }
+
+        public OkRxWebSocketHeartbeat build() {
+            return instance;
+        }
+    }
+
+    private OkRxWebSocketHeartbeat() {}
+
+    long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    int getMaxMissedPongs() {
+        return maxMissedPongs;
+    }
+
+    int getSampleWindow() {
+        return sampleWindow;
+    }
+
+    Func0<String> getPingPayload() {
+        return pingPayload;
+    }
+
+    Func1<OkRxWebSocketMessage, Boolean> getPongMatcher() {
+        return pongMatcher;
+    }
+}
@@ -0,0 +1,115 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.WebSocket;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.subjects.PublishSubject;
+
+/**
+ * Sends the heartbeat pings of a connection, matches their pongs and measures the round-trip times.
+ */
+final class OkRxWebSocketHeartbeatEngine {
+
+    interface Listener {
+
+        /**
+         * Called when too many consecutive pings were not answered.
+         */
+        void onHeartbeatLost(WebSocket webSocket, int missedPongs);
+
+        /**
+         * Called when a ping was written into the WebSocket.
+         */
+        void onPingSent(String ping);
+    }
+
+    private final OkRxWebSocketHeartbeat heartbeat;
+    private final Scheduler scheduler;
+    private final Listener listener;
+    private final PublishSubject<OkRxWebSocketRttSample> rttSubject = PublishSubject.create();
+
+    // send times of the pings waiting for a pong, oldest first
+    private final ConcurrentLinkedQueue<Long> pendingPings = new ConcurrentLinkedQueue<>();
+    private final long[] samples;
+    private int samplesCount;
+    private int nextSample;
+    private Subscription pingSubscription;
+
+    OkRxWebSocketHeartbeatEngine(OkRxWebSocketHeartbeat heartbeat, Scheduler scheduler, Listener listener) {
+        this.heartbeat = heartbeat;
+        this.scheduler = scheduler;
+        this.listener = listener;
+        this.samples = new long[heartbeat.getSampleWindow()];
+    }
+
+    Observable<OkRxWebSocketRttSample> observeRoundTripTimes() {
+        return rttSubject;
+    }
+
+    /**
+     * Starts sending pings into the given, just opened, WebSocket.
+     */
+    synchronized void start(final WebSocket webSocket) {
+        stop();
+        final Scheduler.Worker worker = scheduler.createWorker();
+        worker.schedulePeriodically(new Action0() {
+            @Override
+            public void call() {
+                int missedPongs = pendingPings.size();
+                if (missedPongs >= heartbeat.getMaxMissedPongs()) {
+                    worker.unsubscribe();
+                    listener.onHeartbeatLost(webSocket, missedPongs);
+                    return;
+                }
+                String ping = heartbeat.getPingPayload().call();
+                pendingPings.add(System.nanoTime());
+                if (webSocket.send(ping)) {
+                    listener.onPingSent(ping);
+                }
+            }
+        }, heartbeat.getIntervalMillis(), heartbeat.getIntervalMillis(), TimeUnit.MILLISECONDS);
+        pingSubscription = worker;
+    }
+
+    synchronized void stop() {
+        if (pingSubscription != null) {
+            pingSubscription.unsubscribe();
+            pingSubscription = null;
+        }
+        pendingPings.clear();
+    }
+
+    /**
+     * @return true if the message is a pong, which must not be delivered to the subscribers
+     */
+    boolean onMessage(OkRxWebSocketMessage message) {
+        if (!heartbeat.getPongMatcher().call(message)) {
+            return false;
+        }
+        Long sentAt = pendingPings.poll();
+        if (sentAt != null) {
+            rttSubject.onNext(addSample(System.nanoTime() - sentAt));
+        }
+        return true;
+    }
+
+    private synchronized OkRxWebSocketRttSample addSample(long rttNanos) {
+        samples[nextSample] = rttNanos;
+        nextSample = (nextSample + 1) % samples.length;
+        samplesCount = Math.min(samplesCount + 1, samples.length);
+        long[] sorted = Arrays.copyOf(samples, samplesCount);
+        Arrays.sort(sorted);
+        return new OkRxWebSocketRttSample(rttNanos, percentile(sorted, 0.50), percentile(sorted, 0.99));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
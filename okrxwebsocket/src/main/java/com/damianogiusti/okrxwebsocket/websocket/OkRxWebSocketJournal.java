@@ -0,0 +1,304 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * Append-only journal of outgoing messages, split into segment files named after the sequence number
+ * of their first record. Each record is written as:
+ * <pre>
+ * [sequence: 8 bytes][type: 1 byte][length: 4 bytes][payload][crc32 of the previous fields: 4 bytes]
+ * </pre>
+ * A checkpoint file holds the sequence number of the last acknowledged record. A record torn by a crash
+ * fails its checksum, and the journal is truncated before it when opened.<br/>
+ * The directory is locked until the journal is closed, so that a single journal at a time writes into it.<br/>
+ * Not thread safe: used by the outbox writer thread only.
+ */
+final class OkRxWebSocketJournal {
+
+    interface RecordReader {
+
+        /**
+         * @return false to stop reading
+         */
+        boolean onRecord(long sequence, Object message);
+    }
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String LOCK_FILE = "lock";
+    private static final byte TYPE_TEXT = 0;
+    private static final byte TYPE_BINARY = 1;
+    private static final int RECORD_OVERHEAD = 8 + 1 + 4 + 4;
+
+    private final File directory;
+    private final long segmentSize;
+    private final List<Long> segments = new ArrayList<>(); // first sequence of each segment, ascending
+    private final CRC32 crc = new CRC32();
+    private final FileChannel lockChannel;
+    private FileChannel currentSegment;
+    private long acknowledgedSequence;
+    private long lastSequence;
+
+    /**
+     * @throws IOException if the journal cannot be read, or the directory is used by another journal
+     */
+    OkRxWebSocketJournal(File directory, long segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the outbox directory " + directory);
+        }
+        lockChannel = new RandomAccessFile(new File(directory, LOCK_FILE), "rw").getChannel();
+        try {
+            if (lockChannel.tryLock() == null) {
+                throw new IOException("The outbox directory " + directory + " is used by another process");
+            }
+        } catch (OverlappingFileLockException e) {
+            lockChannel.close();
+            throw new IOException("The outbox directory " + directory + " is used by another socket");
+        } catch (IOException e) {
+            lockChannel.close();
+            throw e;
+        }
+        try {
+            acknowledgedSequence = readCheckpoint();
+            lastSequence = acknowledgedSequence;
+            recover();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    long getAcknowledgedSequence() {
+        return acknowledgedSequence;
+    }
+
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Appends a {@link String} or {@link ByteString} message. It is durable only after {@link #sync()}.
+     *
+     * @return the sequence number of the message
+     */
+    long append(Object message) throws IOException {
+        if (currentSegment == null || currentSegment.size() >= segmentSize) {
+            startSegment(lastSequence + 1);
+        }
+        long sequence = lastSequence + 1;
+        boolean text = message instanceof String;
+        ByteString payload = text ? ByteString.encodeUtf8((String) message) : (ByteString) message;
+        Buffer record = new Buffer()
+                .writeLong(sequence)
+                .writeByte(text ? TYPE_TEXT : TYPE_BINARY)
+                .writeInt(payload.size())
+                .write(payload);
+        byte[] bytes = record.readByteArray();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        currentSegment.write(new Buffer().write(bytes).writeInt((int) crc.getValue()).readByteString().asByteBuffer());
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    void sync() throws IOException {
+        if (currentSegment != null) {
+            currentSegment.force(false);
+        }
+    }
+
+    /**
+     * Closes the current segment and releases the directory.
+     */
+    void close() throws IOException {
+        try {
+            if (currentSegment != null) {
+                currentSegment.close();
+                currentSegment = null;
+            }
+        } finally {
+            lockChannel.close(); // releases the lock
+        }
+    }
+
+    /**
+     * Reads the records from the given sequence number, in order.
+     */
+    void read(long fromSequence, RecordReader reader) throws IOException {
+        for (int i = 0; i < segments.size(); i++) {
+            boolean lastSegment = i == segments.size() - 1;
+            if (!lastSegment && segments.get(i + 1) <= fromSequence) {
+                continue; // all the records of the segment are older
+            }
+            BufferedSource source = Okio.buffer(Okio.source(segmentFile(segments.get(i))));
+            try {
+                while (!source.exhausted()) {
+                    long sequence = source.readLong();
+                    byte type = source.readByte();
+                    ByteString payload = source.readByteString(source.readInt());
+                    source.skip(4); // checksum, already verified when opened
+                    if (sequence >= fromSequence && sequence <= lastSequence) {
+                        Object message = type == TYPE_TEXT ? payload.utf8() : payload;
+                        if (!reader.onRecord(sequence, message)) {
+                            return;
+                        }
+                    }
+                }
+            } finally {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * Marks the records up to the given sequence number as acknowledged, persisting the checkpoint
+     * and deleting the segments holding only acknowledged records.
+     */
+    void acknowledge(long sequence) throws IOException {
+        if (sequence <= acknowledgedSequence) {
+            return;
+        }
+        acknowledgedSequence = Math.min(sequence, lastSequence);
+        writeCheckpoint();
+        while (segments.size() > 1 && segments.get(1) <= acknowledgedSequence + 1) {
+            File segment = segmentFile(segments.remove(0));
+            if (!segment.delete()) {
+                throw new IOException("Unable to delete the outbox segment " + segment);
+            }
+        }
+    }
+
+    private void startSegment(long firstSequence) throws IOException {
+        if (currentSegment != null) {
+            currentSegment.force(false);
+            currentSegment.close();
+        }
+        currentSegment = new RandomAccessFile(segmentFile(firstSequence), "rw").getChannel();
+        currentSegment.position(currentSegment.size());
+        segments.add(firstSequence);
+    }
+
+    /**
+     * Finds the last valid record, truncating the torn tail left by a crash.
+     */
+    private void recover() throws IOException {
+        String[] names = directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        long[] firstSequences = new long[names != null ? names.length : 0];
+        for (int i = 0; i < firstSequences.length; i++) {
+            firstSequences[i] = Long.parseLong(names[i].substring(0, names[i].length() - SEGMENT_SUFFIX.length()));
+        }
+        Arrays.sort(firstSequences);
+        for (long firstSequence : firstSequences) {
+            segments.add(firstSequence);
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            File segment = segmentFile(segments.get(i));
+            long validLength = scan(segment);
+            if (validLength < segment.length()) {
+                RandomAccessFile file = new RandomAccessFile(segment, "rw");
+                try {
+                    file.getChannel().truncate(validLength);
+                } finally {
+                    file.close();
+                }
+                // whatever follows a torn record was never acknowledged as durable
+                for (int j = segments.size() - 1; j > i; j--) {
+                    segmentFile(segments.remove(j)).delete();
+                }
+            }
+        }
+        if (!segments.isEmpty()) {
+            long firstSequence = segments.remove(segments.size() - 1);
+            startSegment(firstSequence);
+        }
+    }
+
+    /**
+     * @return the length of the valid records of the given segment
+     */
+    private long scan(File segment) throws IOException {
+        BufferedSource source = Okio.buffer(Okio.source(segment));
+        long validLength = 0;
+        try {
+            while (!source.exhausted()) {
+                long sequence = source.readLong();
+                byte type = source.readByte();
+                int length = source.readInt();
+                if (length < 0 || (type != TYPE_TEXT && type != TYPE_BINARY)) {
+                    break;
+                }
+                ByteString payload = source.readByteString(length);
+                int checksum = source.readInt();
+                byte[] bytes = new Buffer().writeLong(sequence).writeByte(type).writeInt(length).write(payload).readByteArray();
+                crc.reset();
+                crc.update(bytes, 0, bytes.length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                validLength += RECORD_OVERHEAD + length;
+                lastSequence = Math.max(lastSequence, sequence);
+            }
+        } catch (EOFException e) {
+            // torn record
+        } finally {
+            source.close();
+        }
+        return validLength;
+    }
+
+    private long readCheckpoint() throws IOException {
+        File checkpoint = new File(directory, CHECKPOINT_FILE);
+        if (!checkpoint.exists()) {
+            return 0;
+        }
+        BufferedSource source = Okio.buffer(Okio.source(checkpoint));
+        try {
+            return source.readLong();
+        } catch (EOFException e) {
+            return 0;
+        } finally {
+            source.close();
+        }
+    }
+
+    private void writeCheckpoint() throws IOException {
+        File temporary = new File(directory, CHECKPOINT_FILE + ".tmp");
+        RandomAccessFile file = new RandomAccessFile(temporary, "rw");
+        try {
+            file.setLength(0);
+            file.writeLong(acknowledgedSequence);
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+        if (!temporary.renameTo(new File(directory, CHECKPOINT_FILE))) {
+            throw new IOException("Unable to update the outbox checkpoint");
+        }
+    }
+
+    private File segmentFile(long firstSequence) {
+        return new File(directory, String.format("%020d%s", firstSequence, SEGMENT_SUFFIX));
+    }
+}
@@ -1,5 +1,6 @@
 package com.damianogiusti.okrxwebsocket.websocket;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 import okio.ByteString;
@@ -11,23 +12,30 @@ public class OkRxWebSocketMessage {
 
     static OkRxWebSocketMessage createForNewMessage(Charset charset, String message) {
         OkRxWebSocketMessage websocketMessage = new OkRxWebSocketMessage();
+        websocketMessage.charset = charset;
         websocketMessage.setResponseString(message);
-        websocketMessage.setResponseByte(message.getBytes(charset));
         websocketMessage.setMessageType(OkRxWebSocketMessageType.NEW_MESSAGE);
         return websocketMessage;
     }
 
     static OkRxWebSocketMessage createForNewMessage(Charset charset, ByteString message) {
         OkRxWebSocketMessage websocketMessage = new OkRxWebSocketMessage();
-        websocketMessage.setResponseString(message.string(charset));
-        websocketMessage.setResponseByte(message.toByteArray());
+        websocketMessage.charset = charset;
+        websocketMessage.responseByteString = message;
+        websocketMessage.binary = true;
         websocketMessage.setMessageType(OkRxWebSocketMessageType.NEW_MESSAGE);
         return websocketMessage;
     }
 
     protected OkRxWebSocketMessageType messageType;
-    protected String responseString;
-    protected byte[] responseByte;
+    // arrival time of the frame, set only when metrics are enabled
+    long receivedAtNanos;
+    // payload forms are materialized lazily from whichever one the message was created with
+    protected volatile String responseString;
+    protected volatile byte[] responseByte;
+    protected volatile ByteString responseByteString;
+    protected Charset charset;
+    protected boolean binary;
     protected int code;
 
     protected OkRxWebSocketMessage() {}
@@ -41,7 +49,12 @@ public class OkRxWebSocketMessage {
     }
 
     public String getResponseString() {
-        return responseString;
+        String string = responseString;
+        if (string == null && responseByteString != null) {
+            string = responseByteString.string(charset);
+            responseString = string;
+        }
+        return string;
     }
 
     void setResponseString(String responseString) {
@@ -49,7 +62,48 @@ public class OkRxWebSocketMessage {
     }
 
     public byte[] getResponseByte() {
-        return responseByte;
+        byte[] bytes = responseByte;
+        if (bytes == null) {
+            if (responseByteString != null) {
+                bytes = responseByteString.toByteArray();
+            } else if (responseString != null && charset != null) {
+                bytes = responseString.getBytes(charset);
+            }
+            responseByte = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the payload as an immutable {@link ByteString}.<br/>
+     * Binary messages return the received frame itself, without copying it.
+     */
+    public ByteString getResponseByteString() {
+        ByteString byteString = responseByteString;
+        if (byteString == null) {
+            if (responseString != null && charset != null) {
+                byteString = ByteString.encodeString(responseString, charset);
+            } else if (responseByte != null) {
+                byteString = ByteString.of(responseByte);
+            }
+            responseByteString = byteString;
+        }
+        return byteString;
+    }
+
+    /**
+     * Returns a read-only {@link ByteBuffer} view of the payload, without copying it.
+     */
+    public ByteBuffer getResponseByteBuffer() {
+        ByteString byteString = getResponseByteString();
+        return byteString != null ? byteString.asByteBuffer() : null;
+    }
+
+    /**
+     * @return true if the message was received as a binary frame
+     */
+    boolean isBinary() {
+        return binary;
     }
 
     void setResponseByte(byte[] responseByte) {
@@ -4,5 +4,5 @@ package com.damianogiusti.okrxwebsocket.websocket;
  * Created by Damiano Giusti on 14/05/17.
  */
 public enum OkRxWebSocketMessageType {
-    OPENED, NEW_MESSAGE, CLOSING, CLOSED
+    OPENED, NEW_MESSAGE, CLOSING, CLOSED, FAILED
 }
@@ -0,0 +1,197 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import com.damianogiusti.okrxwebsocket.metrics.OkRxWebSocketMetrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import okhttp3.WebSocket;
+import okio.ByteString;
+import okio.Utf8;
+import rx.CompletableSubscriber;
+
+/**
+ * Bounded queue of outgoing text and binary messages, written in order once the socket is opened.
+ * The subscriber of each message is notified once the message is written, or dropped with the socket.<br/>
+ * When a framer is set, consecutive messages of the same kind are coalesced into a single frame.
+ */
+final class OkRxWebSocketOutboundQueue {
+
+    static final int DEFAULT_MAX_MESSAGES = 1024;
+    static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+    static final int DEFAULT_MAX_FRAME_BYTES = 64 * 1024;
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final List<Entry> settled = new ArrayList<>();
+    private long queuedBytes;
+
+    private int maxMessages = DEFAULT_MAX_MESSAGES;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private OkRxWebSocketFramer framer;
+    private int maxFrameBytes = DEFAULT_MAX_FRAME_BYTES;
+    private long flushIntervalMillis;
+    private OkRxWebSocketMetrics metrics;
+
+    synchronized void setMetrics(OkRxWebSocketMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    synchronized void setLimits(int maxMessages, long maxBytes) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized void setBatching(OkRxWebSocketFramer framer, int maxFrameBytes, long flushIntervalMillis) {
+        this.framer = framer;
+        this.maxFrameBytes = maxFrameBytes;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    synchronized boolean isBatching() {
+        return framer != null;
+    }
+
+    synchronized long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Appends a {@link String} or {@link ByteString} message to the queue.
+     *
+     * @param subscriber subscriber completed once the message is written, or failed if it is dropped; may be null
+     * @throws IllegalStateException if the queue limits would be exceeded
+     */
+    synchronized void offer(Object message, CompletableSubscriber subscriber) {
+        long size = sizeOf(message);
+        if (entries.size() >= maxMessages || queuedBytes + size > maxBytes) {
+            throw new IllegalStateException("OkRxWebSocket send queue is full");
+        }
+        entries.add(new Entry(message, subscriber));
+        queuedBytes += size;
+    }
+
+    /**
+     * Writes every queued message into the given socket, in order.
+     *
+     * @return the number of frames written
+     */
+    synchronized int flush(WebSocket webSocket) {
+        int frames = 0;
+        List<Entry> frameEntries = new ArrayList<>();
+        while (!entries.isEmpty()) {
+            Object message;
+            if (framer != null) {
+                message = pollBatch(entries.peek().message instanceof String, frameEntries);
+            } else {
+                Entry entry = entries.poll();
+                queuedBytes -= sizeOf(entry.message);
+                frameEntries.add(entry);
+                message = entry.message;
+            }
+            boolean accepted = message instanceof String
+                    ? webSocket.send((String) message)
+                    : webSocket.send((ByteString) message);
+            if (!accepted) {
+                // the socket is shutting down, messages still queued are dropped with it
+                Throwable error = new IllegalStateException("Message rejected: the WebSocket is closing or its outgoing buffer is full");
+                settle(frameEntries, error);
+                clear(error);
+                break;
+            }
+            settle(frameEntries, null);
+            if (metrics != null) {
+                metrics.onFrameSent(sizeOf(message));
+            }
+            frames++;
+        }
+        return frames;
+    }
+
+    /**
+     * Drops every queued message, failing its subscriber with the given error.
+     */
+    synchronized void clear(Throwable error) {
+        settle(entries, error);
+        queuedBytes = 0;
+    }
+
+    /**
+     * Notifies the subscribers of the messages written or dropped so far. Must not be called while
+     * holding the queue lock, so that subscribers are never run under it.
+     */
+    void notifySubscribers() {
+        List<Entry> ready;
+        synchronized (this) {
+            if (settled.isEmpty()) {
+                return;
+            }
+            ready = new ArrayList<>(settled);
+            settled.clear();
+        }
+        for (Entry entry : ready) {
+            if (entry.error == null) {
+                entry.subscriber.onCompleted();
+            } else {
+                entry.subscriber.onError(entry.error);
+            }
+        }
+    }
+
+    private void settle(Collection<Entry> written, Throwable error) {
+        for (Entry entry : written) {
+            if (entry.subscriber != null) {
+                entry.error = error;
+                settled.add(entry);
+            }
+        }
+        written.clear();
+    }
+
+    private Object pollBatch(boolean text, List<Entry> frameEntries) {
+        List<String> texts = new ArrayList<>();
+        List<ByteString> binaries = new ArrayList<>();
+        long batchBytes = 0;
+        while (!entries.isEmpty() && entries.peek().message instanceof String == text) {
+            long size = sizeOf(entries.peek().message);
+            if (batchBytes > 0 && batchBytes + size > maxFrameBytes) {
+                break;
+            }
+            Entry entry = entries.poll();
+            queuedBytes -= size;
+            batchBytes += size;
+            frameEntries.add(entry);
+            if (text) {
+                texts.add((String) entry.message);
+            } else {
+                binaries.add((ByteString) entry.message);
+            }
+        }
+        return text ? framer.frameText(texts) : framer.frameBinary(binaries);
+    }
+
+    static long sizeOf(Object message) {
+        return message instanceof String ? Utf8.size((String) message) : ((ByteString) message).size();
+    }
+
+    private static final class Entry {
+
+        final Object message;
+        final CompletableSubscriber subscriber;
+        Throwable error;
+
+        Entry(Object message, CompletableSubscriber subscriber) {
+            this.message = message;
+            this.subscriber = subscriber;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.io.File;
+
+/**
+ * Configuration of the persistent outbox: messages sent with {@link OkRxWebSocket#send(String)} and
+ * {@link OkRxWebSocket#send(byte[])} are first appended to a journal on disk, and written into the socket
+ * whenever it is opened, so that they survive disconnections and restarts of the application.
+ */
+public final class OkRxWebSocketOutbox {
+
+    private final File directory;
+    private long segmentSize = 4 * 1024 * 1024;
+    private OkRxWebSocketSequenceExtractor ackExtractor;
+    private OkRxWebSocketOutboxFramer framer;
+
+    public static class Builder {
+
+        private OkRxWebSocketOutbox instance;
+
+        /**
+         * @param directory directory holding the journal, used by a single socket: another socket using it
+         *                  fails its sends while the first one is opened
+         */
+        public Builder(File directory) {
+            instance = new OkRxWebSocketOutbox(directory);
+        }
+
+        /**
+         * Sets the size, in bytes, after which a new journal segment is started. Segments are deleted
+         * once all their messages are acknowledged.
+         */
+        public Builder segmentSize(long segmentSize) {
+            if (segmentSize <= 0) {
+                throw new IllegalArgumentException("Segment size must be greater than zero");
+            }
+            instance.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Enables the acknowledgements: messages are numbered from 1 in the order they are sent, across restarts
+         * of the application, and every message is written with its sequence number added by the given framer.
+         * After every opening, messages are written again from the one following the last acknowledged.<br/>
+         * Without acknowledgements, messages are removed from the journal as soon as they are handed to the socket,
+         * before the server receives them: the ones still buffered by OkHttp are lost if the connection drops or
+         * the application crashes.
+         *
+         * @param framer       framer adding the sequence number to every message written
+         * @param ackExtractor function extracting, from the acknowledgements sent by the server, the sequence number
+         *                     of the last message received, or {@link OkRxWebSocketSequenceExtractor#NO_SEQUENCE}
+         *                     for other messages
+         */
+        public Builder acknowledgements(OkRxWebSocketOutboxFramer framer, OkRxWebSocketSequenceExtractor ackExtractor) {
+            if (framer == null || ackExtractor == null) {
+                throw new IllegalArgumentException("Framer and acknowledgement extractor must not be null");
+            }
+            instance.framer = framer;
+            instance.ackExtractor = ackExtractor;
+            return this;
+        }
+
+        public OkRxWebSocketOutbox build() {
+            return instance;
+        }
+    }
+
+    private OkRxWebSocketOutbox(File directory) {
+        this.directory = directory;
+    }
+
+    File getDirectory() {
+        return directory;
+    }
+
+    long getSegmentSize() {
+        return segmentSize;
+    }
+
+    OkRxWebSocketSequenceExtractor getAckExtractor() {
+        return ackExtractor;
+    }
+
+    OkRxWebSocketOutboxFramer getFramer() {
+        return framer;
+    }
+}
@@ -0,0 +1,14 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import okio.ByteString;
+
+/**
+ * Adds the outbox sequence number to an outgoing message, so that the server can acknowledge it
+ * and recognize the messages written again after a reconnection.
+ */
+public interface OkRxWebSocketOutboxFramer {
+
+    String frameText(long sequence, String message);
+
+    ByteString frameBinary(long sequence, ByteString message);
+}
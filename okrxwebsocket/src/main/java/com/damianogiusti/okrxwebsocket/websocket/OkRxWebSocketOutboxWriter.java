@@ -0,0 +1,342 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import com.damianogiusti.okrxwebsocket.log.OkRxWebSocketLogger;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okio.ByteString;
+import rx.Completable;
+import rx.CompletableSubscriber;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Owns the outbox journal on a dedicated thread, which appends the messages sent meanwhile as a single
+ * batch made durable with one fsync (group commit), then writes the journal into the socket in order,
+ * pausing while the outgoing buffer is above the high-water mark.<br/>
+ * After every opening the journal is written again from the oldest message not yet acknowledged.<br/>
+ * The thread runs from {@link #start()} to {@link #close()}, and can be started again afterwards.
+ */
+final class OkRxWebSocketOutboxWriter implements Runnable {
+
+    interface Transmitter {
+
+        boolean isOpened();
+
+        /**
+         * @return false if the message was not written because the socket is not opened
+         */
+        boolean write(Object message);
+
+        long queueSize();
+    }
+
+    private static final String TAG = "OkRxWebSocketOutbox";
+
+    private final OkRxWebSocketOutbox outbox;
+    private final Transmitter transmitter;
+    private final OkRxWebSocketLogger logger;
+    private final long highWaterMark;
+    private final long pollIntervalMillis;
+
+    private final Object lock = new Object();
+    private final Queue<PendingSend> pendingSends = new ArrayDeque<>();
+    private boolean signalled;
+    private boolean closed = true;
+    private Thread thread;
+    private final AtomicInteger openings = new AtomicInteger();
+    private final AtomicLong acknowledgedSequence = new AtomicLong(OkRxWebSocketSequenceExtractor.NO_SEQUENCE);
+
+    // accessed by the writer thread only
+    private OkRxWebSocketJournal journal;
+    private IOException failure;
+    private int seenOpenings;
+    private long nextSequence;
+
+    OkRxWebSocketOutboxWriter(OkRxWebSocketOutbox outbox, Transmitter transmitter, OkRxWebSocketLogger logger,
+                              long highWaterMark, long pollIntervalMillis) {
+        this.outbox = outbox;
+        this.transmitter = transmitter;
+        this.logger = logger;
+        this.highWaterMark = highWaterMark;
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    /**
+     * Starts the writer thread, if not running yet.
+     */
+    void start() {
+        synchronized (lock) {
+            if (!closed) {
+                return;
+            }
+            closed = false;
+            final Thread previous = thread;
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    if (previous != null) {
+                        // the journal is released by the previous thread when it stops
+                        try {
+                            previous.join();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    OkRxWebSocketOutboxWriter.this.run();
+                }
+            }, "OkRxWebSocket-outbox");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the writer thread once the messages already enqueued are durable, and closes the journal.
+     * Messages enqueued afterwards fail until the writer is started again.
+     */
+    void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notify();
+        }
+    }
+
+    /**
+     * @return a {@link Completable} which appends the given {@link String} or {@link ByteString} message
+     * to the journal, and completes once the message is durable
+     */
+    Completable enqueue(final Object message) {
+        return Completable.create(new Completable.OnSubscribe() {
+            @Override
+            public void call(CompletableSubscriber subscriber) {
+                subscriber.onSubscribe(Subscriptions.empty());
+                if (message instanceof String) {
+                    logger.debugPayload(TAG, "Storing message: ", (String) message);
+                } else {
+                    logger.debugPayload(TAG, "Storing message: ", (ByteString) message);
+                }
+                synchronized (lock) {
+                    if (!closed) {
+                        pendingSends.add(new PendingSend(message, subscriber));
+                        lock.notify();
+                        return;
+                    }
+                }
+                subscriber.onError(new IllegalStateException("OkRxWebSocket outbox is closed"));
+            }
+        });
+    }
+
+    /**
+     * Restarts writing the journal from the oldest message not yet acknowledged.
+     */
+    void onOpened() {
+        openings.incrementAndGet();
+        signal();
+    }
+
+    /**
+     * Acknowledges the messages up to the given sequence number.
+     */
+    void onAck(long sequence) {
+        long current;
+        do {
+            current = acknowledgedSequence.get();
+            if (sequence <= current) {
+                return;
+            }
+        } while (!acknowledgedSequence.compareAndSet(current, sequence));
+        signal();
+    }
+
+    private void signal() {
+        synchronized (lock) {
+            signalled = true;
+            lock.notify();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<PendingSend> batch = new ArrayList<>();
+        boolean throttled = false;
+        boolean stopping = false;
+        nextSequence = 0;
+        while (!stopping) {
+            synchronized (lock) {
+                try {
+                    // a thread started again after a close replaces this one
+                    if (pendingSends.isEmpty() && !signalled && !closed && thread == Thread.currentThread()) {
+                        lock.wait(throttled ? pollIntervalMillis : 0);
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                }
+                signalled = false;
+                stopping = closed || thread != Thread.currentThread();
+                batch.addAll(pendingSends);
+                pendingSends.clear();
+            }
+            if (journal == null) {
+                openJournal();
+            }
+            if (journal == null) {
+                for (PendingSend pendingSend : batch) {
+                    pendingSend.subscriber.onError(failure);
+                }
+                batch.clear();
+                continue;
+            }
+            try {
+                long firstSequence = commit(batch);
+                applyAcks();
+                throttled = !transmit(batch, firstSequence);
+            } catch (IOException e) {
+                logger.error(TAG, "Unable to update the outbox journal", e);
+                // reopened with the next batch, recovering from the last durable record
+                closeJournal();
+                failure = e;
+            }
+            batch.clear();
+        }
+        closeJournal();
+    }
+
+    private void openJournal() {
+        try {
+            journal = new OkRxWebSocketJournal(outbox.getDirectory(), outbox.getSegmentSize());
+            // when reopened after a failure, the messages already written are not written again
+            nextSequence = Math.min(Math.max(nextSequence, journal.getAcknowledgedSequence() + 1), journal.getLastSequence() + 1);
+            failure = null;
+        } catch (IOException e) {
+            logger.error(TAG, "Unable to open the outbox journal", e);
+            failure = e;
+        }
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.error(TAG, "Unable to close the outbox journal", e);
+            }
+            journal = null;
+        }
+    }
+
+    /**
+     * Appends the given messages and makes them durable with a single sync.
+     *
+     * @return the sequence number of the first message of the batch
+     */
+    private long commit(List<PendingSend> batch) throws IOException {
+        long firstSequence = journal.getLastSequence() + 1;
+        if (batch.isEmpty()) {
+            return firstSequence;
+        }
+        try {
+            for (PendingSend pendingSend : batch) {
+                journal.append(pendingSend.message);
+            }
+            journal.sync();
+        } catch (IOException e) {
+            for (PendingSend pendingSend : batch) {
+                pendingSend.subscriber.onError(e);
+            }
+            throw e;
+        }
+        for (PendingSend pendingSend : batch) {
+            pendingSend.subscriber.onCompleted();
+        }
+        return firstSequence;
+    }
+
+    private void applyAcks() throws IOException {
+        long sequence = acknowledgedSequence.get();
+        if (sequence > journal.getAcknowledgedSequence()) {
+            journal.acknowledge(sequence);
+        }
+    }
+
+    /**
+     * Writes the messages not yet written into the socket, reading from the journal only the ones
+     * which are not part of the batch just committed.
+     *
+     * @return false if writing was paused by the high-water mark
+     */
+    private boolean transmit(List<PendingSend> batch, final long batchFirstSequence) throws IOException {
+        if (!transmitter.isOpened()) {
+            return true; // resumed by the next opening
+        }
+        int currentOpenings = openings.get();
+        if (currentOpenings != seenOpenings) {
+            seenOpenings = currentOpenings;
+            nextSequence = journal.getAcknowledgedSequence() + 1;
+        }
+        final boolean[] paused = new boolean[1];
+        if (nextSequence < batchFirstSequence) {
+            journal.read(nextSequence, new OkRxWebSocketJournal.RecordReader() {
+                @Override
+                public boolean onRecord(long sequence, Object message) {
+                    if (sequence >= batchFirstSequence) {
+                        return false;
+                    }
+                    if (!transmit(message)) {
+                        paused[0] = true;
+                        return false;
+                    }
+                    return true;
+                }
+            });
+        }
+        for (int i = (int) (nextSequence - batchFirstSequence); !paused[0] && i >= 0 && i < batch.size(); i++) {
+            paused[0] = !transmit(batch.get(i).message);
+        }
+        if (outbox.getAckExtractor() == null) {
+            // nothing tells when the server receives them: only OkHttp holds them from now on
+            journal.acknowledge(nextSequence - 1);
+        }
+        return !paused[0] || !transmitter.isOpened();
+    }
+
+    /**
+     * Writes the message having the next sequence number, framed with it when acknowledgements are enabled.
+     */
+    private boolean transmit(Object message) {
+        if (openings.get() != seenOpenings) {
+            return false; // opened again meanwhile: resumed from the oldest message not yet acknowledged
+        }
+        if (transmitter.queueSize() > highWaterMark) {
+            return false;
+        }
+        OkRxWebSocketOutboxFramer framer = outbox.getFramer();
+        if (framer != null) {
+            message = message instanceof String
+                    ? framer.frameText(nextSequence, (String) message)
+                    : framer.frameBinary(nextSequence, (ByteString) message);
+        }
+        if (!transmitter.write(message)) {
+            return false;
+        }
+        nextSequence++;
+        return true;
+    }
+
+    private static final class PendingSend {
+
+        final Object message;
+        final CompletableSubscriber subscriber;
+
+        PendingSend(Object message, CompletableSubscriber subscriber) {
+            this.message = message;
+            this.subscriber = subscriber;
+        }
+    }
+}
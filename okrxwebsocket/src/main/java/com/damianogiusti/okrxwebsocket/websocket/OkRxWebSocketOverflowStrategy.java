@@ -0,0 +1,31 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+/**
+ * Strategies applied to the messages stream when a subscriber cannot keep up with the incoming frames.
+ */
+public enum OkRxWebSocketOverflowStrategy {
+    /**
+     * Messages are emitted without any backpressure handling.
+     */
+    NONE,
+    /**
+     * Messages are buffered up to the configured capacity, then the stream fails.
+     */
+    BUFFER,
+    /**
+     * Messages are buffered up to the configured capacity, then the oldest buffered message is dropped.
+     */
+    DROP_OLDEST,
+    /**
+     * Messages are buffered up to the configured capacity, then the newest buffered message is dropped.
+     */
+    DROP_LATEST,
+    /**
+     * Only the latest message is kept until the subscriber requests it.
+     */
+    LATEST,
+    /**
+     * The stream fails as soon as a message arrives while the subscriber is not ready for it.
+     */
+    ERROR
+}
@@ -0,0 +1,156 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import com.damianogiusti.okrxwebsocket.metrics.OkRxWebSocketMetrics;
+import com.damianogiusti.okrxwebsocket.parser.OkRxWebSocketParser;
+import com.damianogiusti.okrxwebsocket.parser.OkRxWebSocketStreamingParser;
+import com.damianogiusti.okrxwebsocket.parser.OkRxWebSocketTypeParser;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import rx.functions.Func1;
+
+/**
+ * Cache of the functions parsing messages into each response type, so that typed requests and streams
+ * do not allocate a new mapping function on every call.
+ */
+final class OkRxWebSocketParseFunctions {
+
+    private final OkRxWebSocketParser parser;
+    private final ConcurrentMap<Class<?>, Functions<?>> functions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Type, Func1<OkRxWebSocketMessage, ?>> genericFrameFunctions = new ConcurrentHashMap<>();
+    private volatile OkRxWebSocketMetrics metrics;
+
+    OkRxWebSocketParseFunctions(OkRxWebSocketParser parser) {
+        this.parser = parser;
+    }
+
+    void setMetrics(OkRxWebSocketMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return a function parsing the {@link String} form of the messages
+     */
+    <T> Func1<OkRxWebSocketMessage, T> text(Class<T> type) {
+        return get(type).text;
+    }
+
+    /**
+     * @return a function parsing the binary form of the messages
+     */
+    <T> Func1<OkRxWebSocketMessage, T> binary(Class<T> type) {
+        return get(type).binary;
+    }
+
+    /**
+     * @return a function parsing the messages in the same form they were received with
+     */
+    <T> Func1<OkRxWebSocketMessage, T> frame(Class<T> type) {
+        return get(type).frame;
+    }
+
+    /**
+     * @return a function parsing the messages in the generic type, in the same form they were received with.
+     * Requires the parser to be an {@link OkRxWebSocketTypeParser}
+     */
+    @SuppressWarnings("unchecked")
+    <T> Func1<OkRxWebSocketMessage, T> frame(final Type type) {
+        Func1<OkRxWebSocketMessage, ?> function = genericFrameFunctions.get(type);
+        if (function == null) {
+            function = new Func1<OkRxWebSocketMessage, T>() {
+                @Override
+                public T call(OkRxWebSocketMessage okRxWebSocketMessage) {
+                    return parseFrame(type, okRxWebSocketMessage);
+                }
+            };
+            Func1<OkRxWebSocketMessage, ?> previous = genericFrameFunctions.putIfAbsent(type, function);
+            if (previous != null) {
+                function = previous;
+            }
+        }
+        return (Func1<OkRxWebSocketMessage, T>) function;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Functions<T> get(Class<T> type) {
+        Functions<?> typeFunctions = functions.get(type);
+        if (typeFunctions == null) {
+            typeFunctions = new Functions<>(type);
+            Functions<?> previous = functions.putIfAbsent(type, typeFunctions);
+            if (previous != null) {
+                typeFunctions = previous;
+            }
+        }
+        return (Functions<T>) typeFunctions;
+    }
+
+    <T> T parseText(Class<T> type, OkRxWebSocketMessage message) {
+        long start = metrics != null ? System.nanoTime() : 0;
+        T response = parser.parseResponse(type, message.getResponseString());
+        recordParseTime(start);
+        return response;
+    }
+
+    <T> T parseBinary(Class<T> type, OkRxWebSocketMessage message) {
+        long start = metrics != null ? System.nanoTime() : 0;
+        T response;
+        if (parser instanceof OkRxWebSocketStreamingParser) {
+            response = ((OkRxWebSocketStreamingParser) parser).parseResponse(type, message.getResponseByteString());
+        } else {
+            response = parser.parseResponse(type, message.getResponseByte());
+        }
+        recordParseTime(start);
+        return response;
+    }
+
+    private void recordParseTime(long start) {
+        OkRxWebSocketMetrics metrics = this.metrics;
+        if (metrics != null && start != 0) {
+            metrics.onMessageParsed(System.nanoTime() - start);
+        }
+    }
+
+    <T> T parseFrame(Class<T> type, OkRxWebSocketMessage message) {
+        return message.isBinary() ? parseBinary(type, message) : parseText(type, message);
+    }
+
+    <T> T parseFrame(Type type, OkRxWebSocketMessage message) {
+        OkRxWebSocketTypeParser typeParser = (OkRxWebSocketTypeParser) parser;
+        long start = metrics != null ? System.nanoTime() : 0;
+        T response = message.isBinary()
+                ? typeParser.<T>parseResponse(type, message.getResponseByteString())
+                : typeParser.<T>parseResponse(type, message.getResponseString());
+        recordParseTime(start);
+        return response;
+    }
+
+    private final class Functions<T> {
+
+        final Func1<OkRxWebSocketMessage, T> text;
+        final Func1<OkRxWebSocketMessage, T> binary;
+        final Func1<OkRxWebSocketMessage, T> frame;
+
+        Functions(final Class<T> type) {
+            text = new Func1<OkRxWebSocketMessage, T>() {
+                @Override
+                public T call(OkRxWebSocketMessage okRxWebSocketMessage) {
+                    return parseText(type, okRxWebSocketMessage);
+                }
+            };
+            binary = new Func1<OkRxWebSocketMessage, T>() {
+                @Override
+                public T call(OkRxWebSocketMessage okRxWebSocketMessage) {
+                    return parseBinary(type, okRxWebSocketMessage);
+                }
+            };
+            frame = new Func1<OkRxWebSocketMessage, T>() {
+                @Override
+                public T call(OkRxWebSocketMessage okRxWebSocketMessage) {
+                    return parseFrame(type, okRxWebSocketMessage);
+                }
+            };
+        }
+    }
+}
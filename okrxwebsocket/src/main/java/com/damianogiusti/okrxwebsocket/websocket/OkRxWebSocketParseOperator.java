@@ -0,0 +1,75 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import com.damianogiusti.okrxwebsocket.log.OkRxWebSocketLogger;
+
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.functions.Func1;
+
+/**
+ * Parses every message with the given function, skipping the messages which fail to parse instead of
+ * terminating the stream, so that a single malformed frame does not end a long-lived typed stream.
+ */
+final class OkRxWebSocketParseOperator<T> implements Observable.Operator<T, OkRxWebSocketMessage> {
+
+    private static final String TAG = "OkRxWebSocket";
+
+    private final Func1<OkRxWebSocketMessage, T> parseFunction;
+    private final OkRxWebSocketLogger logger;
+
+    OkRxWebSocketParseOperator(Func1<OkRxWebSocketMessage, T> parseFunction, OkRxWebSocketLogger logger) {
+        this.parseFunction = parseFunction;
+        this.logger = logger;
+    }
+
+    @Override
+    public Subscriber<? super OkRxWebSocketMessage> call(Subscriber<? super T> child) {
+        ParseSubscriber<T> parent = new ParseSubscriber<>(child, parseFunction, logger);
+        child.add(parent);
+        return parent;
+    }
+
+    private static final class ParseSubscriber<T> extends Subscriber<OkRxWebSocketMessage> {
+
+        private final Subscriber<? super T> actual;
+        private final Func1<OkRxWebSocketMessage, T> parseFunction;
+        private final OkRxWebSocketLogger logger;
+
+        ParseSubscriber(Subscriber<? super T> actual, Func1<OkRxWebSocketMessage, T> parseFunction, OkRxWebSocketLogger logger) {
+            this.actual = actual;
+            this.parseFunction = parseFunction;
+            this.logger = logger;
+            request(0); // requests are forwarded by the child through the shared producer
+        }
+
+        @Override
+        public void onNext(OkRxWebSocketMessage message) {
+            T value;
+            try {
+                value = parseFunction.call(message);
+            } catch (RuntimeException e) {
+                logger.error(TAG, "Unable to parse message, skipping it", e);
+                request(1); // replaces the skipped message
+                return;
+            }
+            actual.onNext(value);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            actual.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            actual.onCompleted();
+        }
+
+        @Override
+        public void setProducer(Producer producer) {
+            super.setProducer(producer);
+            actual.setProducer(producer);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Completable;
+import rx.Observable;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+/**
+ * Pool of {@link OkRxWebSocket}s connected to the same URL, used as a single socket.<br/>
+ * Outgoing messages are spread among the sockets according to the selection {@link Strategy}, while
+ * incoming messages of every socket are merged in a single stream. Responses to correlated requests
+ * are delivered whichever socket receives them.
+ */
+public final class OkRxWebSocketPool {
+
+    public enum Strategy {
+        /**
+         * Sockets are used in turn.
+         */
+        ROUND_ROBIN,
+        /**
+         * The opened socket having the fewest bytes waiting to be transmitted is used.
+         * Sockets still connecting are used in turn only when none is opened.
+         */
+        LEAST_QUEUE_SIZE,
+        /**
+         * Messages sent with the same affinity key always use the same socket.
+         * Messages sent without a key are spread in turn.
+         */
+        KEY_AFFINITY
+    }
+
+    private final List<OkRxWebSocket> sockets = new ArrayList<>();
+    private final OkRxWebSocketResponseRouter responseRouter = new OkRxWebSocketResponseRouter();
+    private final AtomicInteger nextSocket = new AtomicInteger();
+    private Strategy strategy = Strategy.ROUND_ROBIN;
+
+    public static class Builder {
+
+        private final int size;
+        private final Func0<OkRxWebSocket> socketFactory;
+        private OkRxWebSocketPool instance = new OkRxWebSocketPool();
+
+        /**
+         * @param size          number of sockets of the pool
+         * @param socketFactory function creating each socket of the pool, all configured with the same URL
+         */
+        public Builder(int size, Func0<OkRxWebSocket> socketFactory) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("Pool size must be greater than zero");
+            }
+            this.size = size;
+            this.socketFactory = socketFactory;
+        }
+
+        public Builder strategy(Strategy strategy) {
+            instance.strategy = strategy;
+            return this;
+        }
+
+        /**
+         * Sets the function used to extract the correlation key from incoming messages, shared by all
+         * the sockets of the pool. Replaces the extractors configured on the single sockets.
+         */
+        public Builder correlationKeyExtractor(Func1<OkRxWebSocketMessage, String> correlationKeyExtractor) {
+            instance.responseRouter.setCorrelationKeyExtractor(correlationKeyExtractor);
+            return this;
+        }
+
+        public OkRxWebSocketPool build() {
+            for (int i = 0; i < size; i++) {
+                OkRxWebSocket socket = socketFactory.call();
+                socket.setResponseRouter(instance.responseRouter);
+                instance.sockets.add(socket);
+            }
+            return instance;
+        }
+    }
+
+    private OkRxWebSocketPool() {}
+
+    public List<OkRxWebSocket> getSockets() {
+        return Collections.unmodifiableList(sockets);
+    }
+
+    /**
+     * Opens all the sockets of the pool.
+     *
+     * @return {@link Observable}<{@link OkRxWebSocketActivity}> for monitoring the activity of all the sockets
+     */
+    public Observable<OkRxWebSocketActivity> open() {
+        List<Observable<OkRxWebSocketActivity>> activities = new ArrayList<>(sockets.size());
+        for (OkRxWebSocket socket : sockets) {
+            activities.add(socket.open());
+        }
+        return Observable.merge(activities);
+    }
+
+    /**
+     * Closes all the sockets of the pool.
+     *
+     * @return {@link Completable} for operation completion
+     */
+    public Completable close() {
+        List<Completable> closes = new ArrayList<>(sockets.size());
+        for (OkRxWebSocket socket : sockets) {
+            closes.add(socket.close());
+        }
+        return Completable.merge(closes);
+    }
+
+    /**
+     * Returns an {@link Observable} which emits the messages received by every socket of the pool.
+     */
+    public Observable<OkRxWebSocketMessage> observeSocketMessages() {
+        List<Observable<OkRxWebSocketMessage>> messages = new ArrayList<>(sockets.size());
+        for (OkRxWebSocket socket : sockets) {
+            messages.add(socket.observeSocketMessages());
+        }
+        return Observable.merge(messages);
+    }
+
+    /**
+     * Writes the given message into a socket chosen with the pool strategy.
+     *
+     * @param message message to write
+     * @return {@link Completable} for operation completion
+     */
+    public Completable send(String message) {
+        return selectSocket(null).send(message);
+    }
+
+    /**
+     * Writes the given byte array message into a socket chosen with the pool strategy.
+     *
+     * @param message message to write
+     * @return {@link Completable} for operation completion
+     */
+    public Completable send(byte[] message) {
+        return selectSocket(null).send(message);
+    }
+
+    /**
+     * Writes the given message into the socket associated to the given key,
+     * when using the {@link Strategy#KEY_AFFINITY} strategy.
+     *
+     * @param affinityKey key determining the socket
+     * @param message     message to write
+     * @return {@link Completable} for operation completion
+     */
+    public Completable sendWithAffinity(Object affinityKey, String message) {
+        return selectSocket(affinityKey).send(message);
+    }
+
+    /**
+     * Writes the given byte array message into the socket associated to the given key,
+     * when using the {@link Strategy#KEY_AFFINITY} strategy.
+     *
+     * @param affinityKey key determining the socket
+     * @param message     message to write
+     * @return {@link Completable} for operation completion
+     */
+    public Completable sendWithAffinity(Object affinityKey, byte[] message) {
+        return selectSocket(affinityKey).send(message);
+    }
+
+    /**
+     * Writes the given message into a socket of the pool, and returns an {@link Observable} which emits the
+     * response having the given correlation key, received by any socket of the pool
+     *
+     * @param message        message to write
+     * @param correlationKey key identifying the response
+     * @return {@link Observable} for response delivery
+     */
+    public Observable<OkRxWebSocketMessage> send(String message, String correlationKey) {
+        return selectSocket(null).send(message, correlationKey);
+    }
+
+    /**
+     * Writes the given byte array message into a socket of the pool, and returns an {@link Observable} which
+     * emits the response having the given correlation key, received by any socket of the pool
+     *
+     * @param message        message to write
+     * @param correlationKey key identifying the response
+     * @return {@link Observable} for response delivery
+     */
+    public Observable<OkRxWebSocketMessage> send(byte[] message, String correlationKey) {
+        return selectSocket(null).send(message, correlationKey);
+    }
+
+    /**
+     * Writes the given message into a socket of the pool, and returns an {@link Observable} which emits the
+     * response filtered with the given response matcher function, received by the same socket
+     *
+     * @param message         message to write
+     * @param responseMatcher function applied to determine the response
+     * @return {@link Observable} for response delivery
+     */
+    public Observable<OkRxWebSocketMessage> send(final String message, final Func1<OkRxWebSocketMessage, Boolean> responseMatcher) {
+        return Observable.defer(new Func0<Observable<OkRxWebSocketMessage>>() {
+            @Override
+            public Observable<OkRxWebSocketMessage> call() {
+                return selectSocket(null).send(message, responseMatcher);
+            }
+        });
+    }
+
+    /**
+     * Writes the given byte array message into a socket of the pool, and returns an {@link Observable} which
+     * emits the response filtered with the given response matcher function, received by the same socket
+     *
+     * @param message         message to write
+     * @param responseMatcher function applied to determine the response
+     * @return {@link Observable} for response delivery
+     */
+    public Observable<OkRxWebSocketMessage> send(final byte[] message, final Func1<OkRxWebSocketMessage, Boolean> responseMatcher) {
+        return Observable.defer(new Func0<Observable<OkRxWebSocketMessage>>() {
+            @Override
+            public Observable<OkRxWebSocketMessage> call() {
+                return selectSocket(null).send(message, responseMatcher);
+            }
+        });
+    }
+
+    private OkRxWebSocket selectSocket(Object affinityKey) {
+        switch (strategy) {
+            case LEAST_QUEUE_SIZE:
+                OkRxWebSocket selected = null;
+                long minQueueSize = Long.MAX_VALUE;
+                for (OkRxWebSocket socket : sockets) {
+                    // a connecting socket has nothing in the WebSocket queue, but must not win over an opened one
+                    if (socket.getSocketState() != OkRxWebSocketState.OPENED) {
+                        continue;
+                    }
+                    long queueSize = socket.queueSize();
+                    if (queueSize < minQueueSize) {
+                        selected = socket;
+                        minQueueSize = queueSize;
+                    }
+                }
+                return selected != null ? selected : nextSocket();
+            case KEY_AFFINITY:
+                if (affinityKey != null) {
+                    int hash = affinityKey.hashCode();
+                    hash ^= hash >>> 16; // spread the high bits
+                    return sockets.get((hash & Integer.MAX_VALUE) % sockets.size());
+                }
+                return nextSocket();
+            default:
+                return nextSocket();
+        }
+    }
+
+    /**
+     * @return the next usable socket in turn, or the next socket if none is usable
+     */
+    private OkRxWebSocket nextSocket() {
+        int size = sockets.size();
+        int start = nextSocket.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            OkRxWebSocket socket = sockets.get((start + i) % size);
+            if (isUsable(socket)) {
+                return socket;
+            }
+        }
+        return sockets.get(start % size);
+    }
+
+    private static boolean isUsable(OkRxWebSocket socket) {
+        OkRxWebSocketState state = socket.getSocketState();
+        return state == OkRxWebSocketState.OPENED || state == OkRxWebSocketState.OPENING
+                || state == OkRxWebSocketState.RECONNECTING;
+    }
+}
@@ -0,0 +1,86 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exponential backoff policy with jitter, used to reopen a failed WebSocket.
+ */
+public final class OkRxWebSocketReconnectPolicy {
+
+    private int maxAttempts = Integer.MAX_VALUE;
+    private long baseDelayMillis = 500;
+    private long maxDelayMillis = 30000;
+    private double jitter = 0.5;
+    private final Random random = new Random();
+
+    public static class Builder {
+
+        private OkRxWebSocketReconnectPolicy instance = new OkRxWebSocketReconnectPolicy();
+
+        /**
+         * Sets the number of consecutive failed attempts after which the socket fails permanently.
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 0) {
+                throw new IllegalArgumentException("Max attempts must not be negative");
+            }
+            instance.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the delay before the first attempt, doubled on every following attempt.
+         */
+        public Builder baseDelay(long delay, TimeUnit unit) {
+            instance.baseDelayMillis = unit.toMillis(delay);
+            return this;
+        }
+
+        /**
+         * Sets the upper bound of the delay between two attempts.
+         */
+        public Builder maxDelay(long delay, TimeUnit unit) {
+            instance.maxDelayMillis = unit.toMillis(delay);
+            return this;
+        }
+
+        /**
+         * Sets the fraction of the delay which is randomized, between 0 (no jitter) and 1 (full jitter).<br/>
+         * Randomizing the delay prevents many clients from reconnecting at the same time.
+         */
+        public Builder jitter(double jitter) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("Jitter must be between 0 and 1");
+            }
+            instance.jitter = jitter;
+            return this;
+        }
+
+        public OkRxWebSocketReconnectPolicy build() {
+            if (instance.maxDelayMillis < instance.baseDelayMillis) {
+                throw new IllegalStateException("Max delay must not be lower than base delay");
+            }
+            return instance;
+        }
+    }
+
+    private OkRxWebSocketReconnectPolicy() {}
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param attempt number of the attempt, starting from 1
+     * @return the delay to wait before the given attempt
+     */
+    long getDelayMillis(int attempt) {
+        int shift = Math.min(attempt - 1, 30);
+        long delay = Math.min(maxDelayMillis, baseDelayMillis << shift);
+        if (delay < 0) { // overflow
+            delay = maxDelayMillis;
+        }
+        return delay - (long) (delay * jitter * random.nextDouble());
+    }
+}
@@ -0,0 +1,17 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import okhttp3.Request;
+
+/**
+ * Customizes the handshake request of every connection, for example to tell the server
+ * the last sequence number received, so that a reconnection resumes from there.
+ */
+public interface OkRxWebSocketRequestCustomizer {
+
+    /**
+     * @param builder      builder of the handshake request, already holding the url of the socket
+     * @param lastSequence highest sequence number received so far,
+     *                     or {@link OkRxWebSocketSequenceExtractor#NO_SEQUENCE} if none
+     */
+    void customize(Request.Builder builder, long lastSequence);
+}
@@ -0,0 +1,106 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Bounds the number of requests waiting for their response: once the limit is reached, new requests
+ * are not written until a pending one completes, fails or is unsubscribed.
+ */
+final class OkRxWebSocketRequestLimiter {
+
+    private final int maxInFlight;
+    private final Queue<Action0> waitingRequests = new ArrayDeque<>();
+    private final AtomicInteger draining = new AtomicInteger();
+    private int inFlight;
+
+    OkRxWebSocketRequestLimiter(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @param scheduler scheduler on which the requests which had to wait for a permit are subscribed, instead of
+     *                  the thread releasing the permit (usually the one reading the response of another request)
+     * @return an {@link Observable} which subscribes to the given request once it can be in flight
+     */
+    <T> Observable<T> limit(final Observable<T> request, final Scheduler scheduler) {
+        return Observable.unsafeCreate(new Observable.OnSubscribe<T>() {
+            @Override
+            public void call(final Subscriber<? super T> subscriber) {
+                final Action0 release = new Action0() {
+
+                    private final AtomicBoolean released = new AtomicBoolean();
+
+                    @Override
+                    public void call() {
+                        if (released.compareAndSet(false, true)) {
+                            release();
+                        }
+                    }
+                };
+                final Thread subscribingThread = Thread.currentThread();
+                final AtomicBoolean acquiring = new AtomicBoolean(true);
+                acquire(new Action0() {
+                    @Override
+                    public void call() {
+                        // the permit is also released if the subscriber goes away before the request is subscribed
+                        subscriber.add(Subscriptions.create(release));
+                        if (subscriber.isUnsubscribed()) {
+                            return;
+                        }
+                        Observable<T> started = request.doOnTerminate(release);
+                        if (!acquiring.get() || Thread.currentThread() != subscribingThread) {
+                            started = started.subscribeOn(scheduler);
+                        }
+                        started.unsafeSubscribe(subscriber);
+                    }
+                });
+                acquiring.set(false);
+            }
+        });
+    }
+
+    private void acquire(Action0 start) {
+        synchronized (waitingRequests) {
+            waitingRequests.add(start);
+        }
+        drain();
+    }
+
+    private void release() {
+        synchronized (waitingRequests) {
+            inFlight--;
+        }
+        drain();
+    }
+
+    /**
+     * Starts the waiting requests while permits are available. Requests terminating synchronously
+     * re-enter here, so the loop is guarded to avoid an unbounded recursion.
+     */
+    private void drain() {
+        if (draining.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            while (true) {
+                Action0 next;
+                synchronized (waitingRequests) {
+                    if (inFlight >= maxInFlight || (next = waitingRequests.poll()) == null) {
+                        break;
+                    }
+                    inFlight++;
+                }
+                next.call();
+            }
+        } while (draining.decrementAndGet() != 0);
+    }
+}
@@ -0,0 +1,102 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import rx.Emitter;
+import rx.functions.Func1;
+
+/**
+ * Routes incoming messages to the request waiting for them, looking up the waiter by the
+ * correlation key extracted from the frame instead of testing every pending matcher.
+ */
+final class OkRxWebSocketResponseRouter {
+
+    private final ConcurrentMap<String, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+    private volatile Func1<OkRxWebSocketMessage, String> correlationKeyExtractor;
+
+    void setCorrelationKeyExtractor(Func1<OkRxWebSocketMessage, String> correlationKeyExtractor) {
+        this.correlationKeyExtractor = correlationKeyExtractor;
+    }
+
+    boolean isEnabled() {
+        return correlationKeyExtractor != null;
+    }
+
+    /**
+     * Registers the given emitter as the waiter for the response with the given key.
+     *
+     * @param owner socket through which the request is sent
+     * @return false if another request is already waiting for the same key
+     */
+    boolean register(String correlationKey, Emitter<OkRxWebSocketMessage> emitter, OkRxWebSocket owner) {
+        return pendingRequests.putIfAbsent(correlationKey, new PendingRequest(emitter, owner)) == null;
+    }
+
+    void unregister(String correlationKey, Emitter<OkRxWebSocketMessage> emitter) {
+        PendingRequest pendingRequest = pendingRequests.get(correlationKey);
+        if (pendingRequest != null && pendingRequest.emitter == emitter) {
+            pendingRequests.remove(correlationKey, pendingRequest);
+        }
+    }
+
+    /**
+     * Fails every request sent through the given socket which is still waiting for its response.
+     */
+    void failAll(OkRxWebSocket owner, Throwable error) {
+        for (Map.Entry<String, PendingRequest> entry : pendingRequests.entrySet()) {
+            PendingRequest pendingRequest = entry.getValue();
+            if (pendingRequest.owner == owner && pendingRequests.remove(entry.getKey(), pendingRequest)) {
+                pendingRequest.emitter.onError(error);
+            }
+        }
+    }
+
+    /**
+     * Delivers the given message to its waiter, if any.
+     *
+     * @return true if the message was the response of a pending request
+     */
+    boolean dispatch(OkRxWebSocketMessage message) {
+        Func1<OkRxWebSocketMessage, String> extractor = correlationKeyExtractor;
+        if (extractor == null || pendingRequests.isEmpty()) {
+            return false;
+        }
+        String correlationKey = extractor.call(message);
+        if (correlationKey == null) {
+            return false;
+        }
+        PendingRequest pendingRequest = pendingRequests.remove(correlationKey);
+        if (pendingRequest == null) {
+            return false;
+        }
+        pendingRequest.emitter.onNext(message);
+        pendingRequest.emitter.onCompleted();
+        return true;
+    }
+
+    /**
+     * @return the number of requests sent through the given socket which are waiting for their response
+     */
+    int pendingCount(OkRxWebSocket owner) {
+        int count = 0;
+        for (PendingRequest pendingRequest : pendingRequests.values()) {
+            if (pendingRequest.owner == owner) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static final class PendingRequest {
+
+        final Emitter<OkRxWebSocketMessage> emitter;
+        final OkRxWebSocket owner;
+
+        PendingRequest(Emitter<OkRxWebSocketMessage> emitter, OkRxWebSocket owner) {
+            this.emitter = emitter;
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip time measured by the heartbeat, with the percentiles of the most recent samples.
+ */
+public final class OkRxWebSocketRttSample {
+
+    private final long rttNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+
+    OkRxWebSocketRttSample(long rttNanos, long p50Nanos, long p99Nanos) {
+        this.rttNanos = rttNanos;
+        this.p50Nanos = p50Nanos;
+        this.p99Nanos = p99Nanos;
+    }
+
+    public long getRtt(TimeUnit unit) {
+        return unit.convert(rttNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getP50(TimeUnit unit) {
+        return unit.convert(p50Nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getP99(TimeUnit unit) {
+        return unit.convert(p99Nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("rtt %d us, p50 %d us, p99 %d us", rttNanos / 1000, p50Nanos / 1000, p99Nanos / 1000);
+    }
+}
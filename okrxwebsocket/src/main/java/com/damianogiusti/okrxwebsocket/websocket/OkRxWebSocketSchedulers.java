@@ -0,0 +1,44 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * Schedulers shared by all the {@link OkRxWebSocket} instances.
+ */
+final class OkRxWebSocketSchedulers {
+
+    private OkRxWebSocketSchedulers() {}
+
+    /**
+     * @return a scheduler backed by a bounded pool of daemon threads, used to parse incoming messages
+     * away from the OkHttp reader thread
+     */
+    static Scheduler parse() {
+        return ParseSchedulerHolder.INSTANCE;
+    }
+
+    private static final class ParseSchedulerHolder {
+
+        private static final Scheduler INSTANCE = Schedulers.from(createExecutor());
+
+        private static ExecutorService createExecutor() {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+            return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "OkRxWebSocket-parser-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+/**
+ * Extracts the sequence number assigned by the server to a message, as a primitive to avoid boxing
+ * on every incoming frame.
+ */
+public interface OkRxWebSocketSequenceExtractor {
+
+    /**
+     * Returned for the messages without a sequence number, which are never deduplicated.
+     */
+    long NO_SEQUENCE = Long.MIN_VALUE;
+
+    long extractSequence(OkRxWebSocketMessage message);
+}
@@ -0,0 +1,39 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+/**
+ * Range of sequence numbers skipped by the server, detected when a message arrives with a sequence
+ * number greater than the next expected one. The missing messages may still arrive out of order.
+ */
+public final class OkRxWebSocketSequenceGap {
+
+    private final long fromSequence;
+    private final long toSequence;
+
+    OkRxWebSocketSequenceGap(long fromSequence, long toSequence) {
+        this.fromSequence = fromSequence;
+        this.toSequence = toSequence;
+    }
+
+    /**
+     * @return the first missing sequence number
+     */
+    public long getFromSequence() {
+        return fromSequence;
+    }
+
+    /**
+     * @return the last missing sequence number
+     */
+    public long getToSequence() {
+        return toSequence;
+    }
+
+    public long getSize() {
+        return toSequence - fromSequence + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "gap [" + fromSequence + ", " + toSequence + "]";
+    }
+}
@@ -0,0 +1,124 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window over the most recent sequence numbers, recording the received ones in a bitmap
+ * so that duplicates can be detected without boxing or hashing.<br/>
+ * Sequence numbers older than the window cannot be told apart from duplicates, so they are rejected too.
+ * The window also tracks the highest sequence number up to which none is missing: a gap sliding out
+ * of the window is given up, as its messages would be rejected anyway.
+ */
+final class OkRxWebSocketSequenceWindow {
+
+    static final int ACCEPTED = 0;
+    static final int ACCEPTED_AFTER_GAP = 1;
+    static final int DUPLICATE = 2;
+    static final int OUT_OF_WINDOW = 3;
+
+    private final long[] bitmap;
+    private final int mask;
+    private boolean started;
+    private long highestSequence;
+    private long contiguousSequence;
+    private long gapStart;
+
+    /**
+     * @param size number of sequence numbers tracked, rounded up to a power of two of at least 64
+     */
+    OkRxWebSocketSequenceWindow(int size) {
+        int capacity = Math.max(64, Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+        bitmap = new long[capacity >>> 6];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Records the given sequence number.
+     *
+     * @return {@link #ACCEPTED}, {@link #ACCEPTED_AFTER_GAP}, {@link #DUPLICATE} or {@link #OUT_OF_WINDOW}
+     */
+    synchronized int accept(long sequence) {
+        if (!started) {
+            started = true;
+            highestSequence = sequence;
+            contiguousSequence = sequence;
+            set(sequence);
+            return ACCEPTED;
+        }
+        int result = record(sequence);
+        if (result == ACCEPTED || result == ACCEPTED_AFTER_GAP) {
+            if (highestSequence - contiguousSequence > mask) {
+                contiguousSequence = highestSequence - mask - 1;
+            }
+            while (contiguousSequence < highestSequence && isSet(contiguousSequence + 1)) {
+                contiguousSequence++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Restarts the window from the given sequence number, considered received along with all the previous ones.
+     */
+    synchronized void reset(long sequence) {
+        // every slot of the window holds a sequence number not above the given one, so all of them are seen
+        Arrays.fill(bitmap, -1L);
+        started = true;
+        highestSequence = sequence;
+        contiguousSequence = sequence;
+    }
+
+    /**
+     * @return the highest sequence number up to which all the sequence numbers were accepted
+     */
+    synchronized long getContiguousSequence() {
+        return contiguousSequence;
+    }
+
+    private int record(long sequence) {
+        if (sequence > highestSequence) {
+            long distance = sequence - highestSequence;
+            if (distance > mask) {
+                Arrays.fill(bitmap, 0L);
+            } else {
+                for (long s = highestSequence + 1; s < sequence; s++) {
+                    clear(s);
+                }
+            }
+            set(sequence);
+            gapStart = highestSequence + 1;
+            highestSequence = sequence;
+            return distance > 1 ? ACCEPTED_AFTER_GAP : ACCEPTED;
+        }
+        if (highestSequence - sequence > mask) {
+            return OUT_OF_WINDOW;
+        }
+        if (isSet(sequence)) {
+            return DUPLICATE;
+        }
+        set(sequence);
+        return ACCEPTED;
+    }
+
+    /**
+     * @return the first missing sequence number of the gap reported by the last {@link #ACCEPTED_AFTER_GAP}
+     */
+    synchronized long getGapStart() {
+        return gapStart;
+    }
+
+    private boolean isSet(long sequence) {
+        int bit = (int) (sequence & mask);
+        return (bitmap[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private void set(long sequence) {
+        int bit = (int) (sequence & mask);
+        bitmap[bit >>> 6] |= 1L << bit;
+    }
+
+    private void clear(long sequence) {
+        int bit = (int) (sequence & mask);
+        bitmap[bit >>> 6] &= ~(1L << bit);
+    }
+}
@@ -4,5 +4,5 @@ package com.damianogiusti.okrxwebsocket.websocket;
  * Created by Damiano Giusti on 14/05/17.
  */
 public enum OkRxWebSocketState {
-    OPENING, OPENED, CLOSING, CLOSED, ERROR
+    OPENING, OPENED, CLOSING, CLOSED, ERROR, RECONNECTING
 }
@@ -0,0 +1,124 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rx.Observable;
+import rx.subjects.PublishSubject;
+
+/**
+ * Lock-free state machine of a WebSocket connection.<br/>
+ * Transitions are validated and applied with compare-and-set, and state changes are emitted
+ * one at a time, in the same order the transitions were applied, whichever thread applied them.
+ */
+final class OkRxWebSocketStateMachine {
+
+    private static final Map<OkRxWebSocketState, EnumSet<OkRxWebSocketState>> TRANSITIONS = new EnumMap<>(OkRxWebSocketState.class);
+
+    static {
+        TRANSITIONS.put(OkRxWebSocketState.CLOSED, EnumSet.of(OkRxWebSocketState.OPENING));
+        TRANSITIONS.put(OkRxWebSocketState.ERROR, EnumSet.of(OkRxWebSocketState.OPENING));
+        TRANSITIONS.put(OkRxWebSocketState.OPENING, EnumSet.of(OkRxWebSocketState.OPENED, OkRxWebSocketState.CLOSING,
+                OkRxWebSocketState.CLOSED, OkRxWebSocketState.ERROR, OkRxWebSocketState.RECONNECTING));
+        TRANSITIONS.put(OkRxWebSocketState.OPENED, EnumSet.of(OkRxWebSocketState.CLOSING, OkRxWebSocketState.CLOSED,
+                OkRxWebSocketState.ERROR, OkRxWebSocketState.RECONNECTING));
+        TRANSITIONS.put(OkRxWebSocketState.CLOSING, EnumSet.of(OkRxWebSocketState.CLOSED, OkRxWebSocketState.ERROR,
+                OkRxWebSocketState.RECONNECTING));
+        TRANSITIONS.put(OkRxWebSocketState.RECONNECTING, EnumSet.of(OkRxWebSocketState.OPENING, OkRxWebSocketState.CLOSED,
+                OkRxWebSocketState.ERROR));
+    }
+
+    private final AtomicReference<Transition> current = new AtomicReference<>(new Transition(OkRxWebSocketState.CLOSED, 0));
+    private final PublishSubject<OkRxWebSocketState> stateChangesSubject = PublishSubject.create();
+
+    // transitions waiting to be emitted, by sequence number
+    private final ConcurrentMap<Long, OkRxWebSocketState> pendingEmissions = new ConcurrentHashMap<>();
+    private final AtomicLong nextEmission = new AtomicLong(1);
+    private final AtomicInteger emitting = new AtomicInteger();
+
+    OkRxWebSocketState get() {
+        return current.get().state;
+    }
+
+    Observable<OkRxWebSocketState> observe() {
+        return stateChangesSubject;
+    }
+
+    static boolean isValid(OkRxWebSocketState from, OkRxWebSocketState to) {
+        EnumSet<OkRxWebSocketState> targets = TRANSITIONS.get(from);
+        return targets != null && targets.contains(to);
+    }
+
+    /**
+     * Moves to the given state only if the current state is the expected one.
+     *
+     * @return true if the transition was applied
+     */
+    boolean transition(OkRxWebSocketState expected, OkRxWebSocketState to) {
+        Transition transition = current.get();
+        if (transition.state != expected || !isValid(expected, to)) {
+            return false;
+        }
+        Transition next = new Transition(to, transition.sequence + 1);
+        if (current.compareAndSet(transition, next)) {
+            emit(next);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Moves to the given state from whatever the current state is, if the transition is valid.
+     *
+     * @return true if the transition was applied
+     */
+    boolean moveTo(OkRxWebSocketState to) {
+        while (true) {
+            Transition transition = current.get();
+            if (!isValid(transition.state, to)) {
+                return false;
+            }
+            Transition next = new Transition(to, transition.sequence + 1);
+            if (current.compareAndSet(transition, next)) {
+                emit(next);
+                return true;
+            }
+        }
+    }
+
+    private void emit(Transition transition) {
+        pendingEmissions.put(transition.sequence, transition.state);
+        if (emitting.getAndIncrement() != 0) {
+            return; // the thread currently emitting will deliver this transition too
+        }
+        int missed = 1;
+        while (true) {
+            OkRxWebSocketState state;
+            while ((state = pendingEmissions.remove(nextEmission.get())) != null) {
+                nextEmission.incrementAndGet();
+                stateChangesSubject.onNext(state);
+            }
+            missed = emitting.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private static final class Transition {
+
+        final OkRxWebSocketState state;
+        final long sequence;
+
+        Transition(OkRxWebSocketState state, long sequence) {
+            this.state = state;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.ByteString;
+import okio.Source;
+import rx.Observable;
+import rx.Observer;
+import rx.exceptions.Exceptions;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func2;
+import rx.observables.SyncOnSubscribe;
+
+/**
+ * Splits a stream into binary chunk frames, each one made of a header and at most a chunk size of payload:
+ * <pre>
+ * [magic: 8 bytes][stream id: 8 bytes][chunk index: 4 bytes][flags: 1 byte][payload]
+ * </pre>
+ * The last chunk of a stream has the {@link #FLAG_LAST} flag, and can have an empty payload.
+ */
+final class OkRxWebSocketStreamChunks {
+
+    static final long MAGIC = 0x4F6B5278_4368756EL; // "OkRxChun"
+    static final int HEADER_SIZE = 8 + 8 + 4 + 1;
+    static final byte FLAG_LAST = 1;
+
+    private OkRxWebSocketStreamChunks() {}
+
+    /**
+     * @return true if the given frame is a chunk frame
+     */
+    static boolean isChunk(ByteString frame) {
+        if (frame.size() < HEADER_SIZE) {
+            return false;
+        }
+        long magic = 0;
+        for (int i = 0; i < 8; i++) {
+            magic = (magic << 8) | (frame.getByte(i) & 0xFF);
+        }
+        return magic == MAGIC;
+    }
+
+    /**
+     * Returns an {@link Observable} which reads the given source one chunk at a time, only when a chunk
+     * is requested, and closes it once read or unsubscribed.
+     */
+    static Observable<ByteString> chunks(final Source source, final long streamId, final int chunkSize) {
+        return Observable.create(SyncOnSubscribe.createStateful(new Func0<Integer>() {
+            @Override
+            public Integer call() {
+                return 0;
+            }
+        }, new Func2<Integer, Observer<? super ByteString>, Integer>() {
+            @Override
+            public Integer call(Integer index, Observer<? super ByteString> observer) {
+                if (index < 0) {
+                    observer.onCompleted();
+                    return index;
+                }
+                Buffer frame = new Buffer()
+                        .writeLong(MAGIC)
+                        .writeLong(streamId)
+                        .writeInt(index);
+                Buffer payload = new Buffer();
+                boolean last = false;
+                try {
+                    while (payload.size() < chunkSize) {
+                        if (source.read(payload, chunkSize - payload.size()) == -1) {
+                            last = true;
+                            break;
+                        }
+                    }
+                } catch (IOException e) {
+                    throw Exceptions.propagate(e);
+                }
+                frame.writeByte(last ? FLAG_LAST : 0);
+                frame.write(payload, payload.size());
+                observer.onNext(frame.readByteString());
+                return last ? -1 : index + 1;
+            }
+        }, new Action1<Integer>() {
+            @Override
+            public void call(Integer index) {
+                closeQuietly(source);
+            }
+        }));
+    }
+
+    private static void closeQuietly(Source source) {
+        try {
+            source.close();
+        } catch (IOException ignored) {
+            // nothing else to do
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import com.damianogiusti.okrxwebsocket.log.OkRxWebSocketLogger;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import okio.ByteString;
+import okio.Sink;
+import rx.Observer;
+import rx.Scheduler;
+
+/**
+ * Writes the chunks of the incoming streams into their sinks as they arrive, so that a stream is never
+ * held in memory as a whole. Chunks are written on the thread reading from the socket.
+ * <p>
+ * A stream whose last chunk was lost would otherwise be remembered forever: streams receiving no chunk for
+ * {@link #IDLE_TIMEOUT_MILLIS}, and the least recently active ones beyond {@link #MAX_OPEN_STREAMS}, are
+ * evicted when the next chunk arrives.
+ */
+final class OkRxWebSocketStreamReassembler {
+
+    private static final String TAG = "OkRxWebSocketStreams";
+
+    static final long IDLE_TIMEOUT_MILLIS = 60000;
+    static final int MAX_OPEN_STREAMS = 64;
+
+    private final OkRxWebSocketStreamSinkFactory sinkFactory;
+    private final Observer<? super Long> completedStreams;
+    private final Scheduler scheduler;
+    private final OkRxWebSocketLogger logger;
+    // in access order, so that the least recently active stream comes first
+    private final LinkedHashMap<Long, IncomingStream> streams = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param scheduler provides the time of the chunks
+     */
+    OkRxWebSocketStreamReassembler(OkRxWebSocketStreamSinkFactory sinkFactory, Observer<? super Long> completedStreams,
+                                   Scheduler scheduler, OkRxWebSocketLogger logger) {
+        this.sinkFactory = sinkFactory;
+        this.completedStreams = completedStreams;
+        this.scheduler = scheduler;
+        this.logger = logger;
+    }
+
+    /**
+     * @return false if the given frame is not a chunk frame
+     */
+    boolean onFrame(ByteString frame) {
+        if (!OkRxWebSocketStreamChunks.isChunk(frame)) {
+            return false;
+        }
+        Buffer chunk = new Buffer().write(frame);
+        long streamId;
+        int index;
+        boolean last;
+        try {
+            chunk.skip(8); // magic
+            streamId = chunk.readLong();
+            index = chunk.readInt();
+            last = (chunk.readByte() & OkRxWebSocketStreamChunks.FLAG_LAST) != 0;
+        } catch (IOException e) {
+            throw new AssertionError(e); // the header size was already checked
+        }
+        Long completedStream = onChunk(streamId, index, last, chunk);
+        if (completedStream != null) {
+            completedStreams.onNext(completedStream);
+        }
+        return true;
+    }
+
+    /**
+     * @return the id of the stream if it is completed by this chunk
+     */
+    private synchronized Long onChunk(long streamId, int index, boolean last, Buffer payload) {
+        long now = scheduler.now();
+        IncomingStream stream = streams.get(streamId);
+        if (stream == null) {
+            if (index != 0) {
+                evict(now);
+                return null; // the beginning of the stream was lost, skip it entirely
+            }
+            try {
+                stream = new IncomingStream(sinkFactory.create(streamId));
+            } catch (IOException e) {
+                logger.error(TAG, e, "Unable to create the sink of stream %d", streamId);
+                stream = new IncomingStream(null);
+            }
+            streams.put(streamId, stream);
+        }
+        stream.lastChunkAt = now;
+        evict(now);
+        if (stream.isDiscarded()) {
+            if (last) {
+                streams.remove(streamId);
+            }
+            return null;
+        }
+        try {
+            if (index != stream.nextIndex) {
+                throw new IOException("Expected chunk " + stream.nextIndex + " but received " + index);
+            }
+            stream.nextIndex++;
+            stream.sink.write(payload, payload.size());
+            if (last) {
+                streams.remove(streamId);
+                stream.sink.close();
+                return streamId;
+            }
+        } catch (IOException e) {
+            logger.error(TAG, e, "Discarding stream %d", streamId);
+            closeQuietly(stream.sink);
+            stream.sink = null;
+            if (last) {
+                streams.remove(streamId);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forgets the streams idle since too long, and the least recently active ones while there are too many.
+     */
+    private void evict(long now) {
+        Iterator<Map.Entry<Long, IncomingStream>> iterator = streams.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, IncomingStream> entry = iterator.next();
+            IncomingStream stream = entry.getValue();
+            boolean idle = now - stream.lastChunkAt >= IDLE_TIMEOUT_MILLIS;
+            if (!idle && streams.size() <= MAX_OPEN_STREAMS) {
+                return; // the following streams are more recently active
+            }
+            iterator.remove();
+            if (!stream.isDiscarded()) {
+                logger.warn(TAG, "Aborting stream %d, %s", entry.getKey(), idle ? "idle" : "too many open streams");
+                closeQuietly(stream.sink);
+            }
+        }
+    }
+
+    /**
+     * @return the number of streams remembered, including the discarded ones still expecting chunks
+     */
+    synchronized int openStreams() {
+        return streams.size();
+    }
+
+    /**
+     * Closes the sinks of the streams which are not completed, since their remaining chunks will never arrive.
+     */
+    synchronized void abortAll() {
+        for (Map.Entry<Long, IncomingStream> entry : streams.entrySet()) {
+            if (!entry.getValue().isDiscarded()) {
+                logger.warn(TAG, "Aborting incomplete stream %d", entry.getKey());
+                closeQuietly(entry.getValue().sink);
+            }
+        }
+        streams.clear();
+    }
+
+    private static void closeQuietly(Sink sink) {
+        try {
+            sink.close();
+        } catch (IOException ignored) {
+            // nothing else to do
+        }
+    }
+
+    private static final class IncomingStream {
+
+        // null once the stream is discarded, its remaining chunks are then ignored
+        Sink sink;
+        int nextIndex;
+        long lastChunkAt;
+
+        IncomingStream(Sink sink) {
+            this.sink = sink;
+        }
+
+        boolean isDiscarded() {
+            return sink == null;
+        }
+    }
+}
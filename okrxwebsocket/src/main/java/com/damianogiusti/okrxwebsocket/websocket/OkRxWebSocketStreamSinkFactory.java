@@ -0,0 +1,17 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.io.IOException;
+
+import okio.Sink;
+
+/**
+ * Creates the {@link Sink} into which the chunks of an incoming stream are written.
+ */
+public interface OkRxWebSocketStreamSinkFactory {
+
+    /**
+     * @param streamId id of the incoming stream
+     * @return the sink of the stream, which is closed once the stream ends
+     */
+    Sink create(long streamId) throws IOException;
+}
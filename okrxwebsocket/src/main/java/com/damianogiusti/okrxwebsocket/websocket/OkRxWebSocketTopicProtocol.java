@@ -0,0 +1,11 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+/**
+ * Creates the control messages asking the server to start or stop publishing a topic.
+ */
+public interface OkRxWebSocketTopicProtocol {
+
+    String subscribeMessage(String topic);
+
+    String unsubscribeMessage(String topic);
+}
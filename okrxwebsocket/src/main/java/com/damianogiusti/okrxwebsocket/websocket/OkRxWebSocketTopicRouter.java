@@ -0,0 +1,95 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import rx.Observable;
+import rx.functions.Func1;
+import rx.subjects.PublishSubject;
+
+/**
+ * Routes incoming messages to the subscribers of their topic with a single lookup, and counts the
+ * subscribers of each topic so that the server is asked to publish only the topics in use.<br/>
+ * Subscriptions are changed while holding the router lock, so that their control messages are written
+ * in the same order.
+ */
+final class OkRxWebSocketTopicRouter {
+
+    private final ConcurrentMap<String, Topic> topics = new ConcurrentHashMap<>();
+    private volatile Func1<OkRxWebSocketMessage, String> topicExtractor;
+
+    void setTopicExtractor(Func1<OkRxWebSocketMessage, String> topicExtractor) {
+        this.topicExtractor = topicExtractor;
+    }
+
+    boolean isEnabled() {
+        return topicExtractor != null;
+    }
+
+    /**
+     * Adds a subscriber to the given topic. Must be called while holding the router lock.
+     *
+     * @return the messages of the topic
+     */
+    Observable<OkRxWebSocketMessage> acquire(String topicName) {
+        Topic topic = topics.get(topicName);
+        if (topic == null) {
+            topic = new Topic();
+            topics.put(topicName, topic);
+        }
+        topic.subscribers++;
+        return topic.messages;
+    }
+
+    /**
+     * Removes a subscriber from the given topic. Must be called while holding the router lock.
+     *
+     * @return true if it was the last subscriber of the topic
+     */
+    boolean release(String topicName) {
+        Topic topic = topics.get(topicName);
+        if (topic == null || --topic.subscribers > 0) {
+            return false;
+        }
+        topics.remove(topicName);
+        return true;
+    }
+
+    /**
+     * @return true if the given topic has just got its first subscriber
+     */
+    boolean isFirstSubscriber(String topicName) {
+        Topic topic = topics.get(topicName);
+        return topic != null && topic.subscribers == 1;
+    }
+
+    /**
+     * @return the topics having at least a subscriber. Must be called while holding the router lock.
+     */
+    List<String> activeTopics() {
+        return new ArrayList<>(topics.keySet());
+    }
+
+    void dispatch(OkRxWebSocketMessage message) {
+        Func1<OkRxWebSocketMessage, String> extractor = topicExtractor;
+        if (extractor == null || topics.isEmpty()) {
+            return;
+        }
+        String topicName = extractor.call(message);
+        if (topicName == null) {
+            return;
+        }
+        Topic topic = topics.get(topicName);
+        if (topic != null) {
+            topic.messages.onNext(message);
+        }
+    }
+
+    private static final class Topic {
+
+        final PublishSubject<OkRxWebSocketMessage> messages = PublishSubject.create();
+        int subscribers;
+    }
+}
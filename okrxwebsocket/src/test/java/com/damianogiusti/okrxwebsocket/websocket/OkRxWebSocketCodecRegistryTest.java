@@ -0,0 +1,156 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import com.damianogiusti.okrxwebsocket.codec.OkRxWebSocketBinaryCodec;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okio.ByteString;
+
+import static org.junit.Assert.*;
+
+public class OkRxWebSocketCodecRegistryTest {
+
+    private static class Quote {
+
+        final String symbol;
+        final long price;
+
+        Quote(String symbol, long price) {
+            this.symbol = symbol;
+            this.price = price;
+        }
+    }
+
+    private static final class DelayedQuote extends Quote {
+
+        DelayedQuote(String symbol, long price) {
+            super(symbol, price);
+        }
+    }
+
+    private static final class QuoteCodec extends OkRxWebSocketBinaryCodec<Quote> {
+
+        @Override
+        protected void write(Quote value, Writer writer) {
+            writer.writeString(value.symbol).writeVarint(value.price);
+        }
+
+        @Override
+        protected Quote read(Reader reader) throws IOException {
+            return new Quote(reader.readString(), reader.readVarint());
+        }
+    }
+
+    private static final class TextCodec extends OkRxWebSocketBinaryCodec<String> {
+
+        @Override
+        protected void write(String value, Writer writer) {
+            writer.writeString(value);
+        }
+
+        @Override
+        protected String read(Reader reader) throws IOException {
+            return reader.readString();
+        }
+    }
+
+    private OkRxWebSocketCodecRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new OkRxWebSocketCodecRegistry();
+        registry.register(300, Quote.class, new QuoteCodec());
+        registry.register(1, String.class, new TextCodec());
+    }
+
+    @Test
+    public void encode_decode_roundTrip() throws Exception {
+        ByteString message = registry.encode(new Quote("AAPL", 1234));
+
+        Quote quote = registry.decode(Quote.class, message);
+
+        assertNotNull(quote);
+        assertEquals("AAPL", quote.symbol);
+        assertEquals(1234, quote.price);
+    }
+
+    @Test
+    public void encode_usesTheCodecOfTheSuperclass() throws Exception {
+        ByteString message = registry.encode(new DelayedQuote("AAPL", 1234));
+
+        Quote quote = registry.decode(Quote.class, message);
+
+        assertNotNull(quote);
+        assertEquals("AAPL", quote.symbol);
+    }
+
+    @Test
+    public void decode_skipsMessagesOfOtherTypes() throws Exception {
+        ByteString message = registry.encode("hello");
+
+        assertNull(registry.decode(Quote.class, message));
+        assertEquals("hello", registry.decode(String.class, message));
+    }
+
+    @Test
+    public void decode_skipsMessagesWithoutMarker() throws Exception {
+        ByteString encoded = registry.encode("hello");
+        // the same payload, as written by a peer not using the codecs
+        ByteString unmarked = encoded.substring(2);
+
+        assertNull(registry.decode(String.class, unmarked));
+        assertNull(registry.decode(String.class, ByteString.EMPTY));
+        assertNull(registry.decode(String.class, ByteString.of((byte) 0xC0)));
+    }
+
+    @Test
+    public void decode_skipsMarkedMessagesWithTruncatedTypeId() throws Exception {
+        assertNull(registry.decode(Quote.class, ByteString.of((byte) 0xC0, (byte) 0xDE, (byte) 0xAC)));
+    }
+
+    @Test
+    public void isRegistered() throws Exception {
+        assertTrue(registry.isRegistered(Quote.class));
+        assertFalse(registry.isRegistered(Integer.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_failsOnMalformedPayload() throws Exception {
+        ByteString message = registry.encode(new Quote("AAPL", 1234));
+
+        registry.decode(Quote.class, message.substring(0, message.size() - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encode_failsForUnregisteredType() throws Exception {
+        registry.encode(42);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void register_rejectsDuplicateTypeId() throws Exception {
+        registry.register(1, Integer.class, new OkRxWebSocketBinaryCodec<Integer>() {
+            @Override
+            protected void write(Integer value, Writer writer) {
+                writer.writeSignedVarint(value);
+            }
+
+            @Override
+            protected Integer read(Reader reader) throws IOException {
+                return (int) reader.readSignedVarint();
+            }
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void register_rejectsDuplicateType() throws Exception {
+        registry.register(2, String.class, new TextCodec());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void register_rejectsNegativeTypeId() throws Exception {
+        registry.register(-1, Integer.class, null);
+    }
+}
@@ -0,0 +1,126 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import org.junit.Test;
+
+import java.util.zip.Deflater;
+
+import okio.ByteString;
+
+import static org.junit.Assert.*;
+
+public class OkRxWebSocketCompressorTest {
+
+    private static final byte[] DICTIONARY = "{\"type\":\"quote\",\"symbol\":\"price\":".getBytes();
+
+    private static OkRxWebSocketCompressor compressor(int minSize, byte[] dictionary) {
+        OkRxWebSocketCompression.Builder builder = new OkRxWebSocketCompression.Builder().minSize(minSize);
+        if (dictionary != null) {
+            builder.dictionary(dictionary);
+        }
+        return new OkRxWebSocketCompressor(builder.build());
+    }
+
+    private static ByteString repetitiveMessage() {
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            message.append("{\"type\":\"quote\",\"symbol\":\"AAPL\",\"price\":").append(i).append('}');
+        }
+        return ByteString.encodeUtf8(message.toString());
+    }
+
+    @Test
+    public void roundTrip_compressesLargeMessages() throws Exception {
+        OkRxWebSocketCompressor compressor = compressor(32, null);
+        ByteString message = repetitiveMessage();
+
+        ByteString frame = compressor.compress(message);
+
+        assertTrue(frame.size() < message.size());
+        assertEquals(message, compressor.decompress(frame));
+    }
+
+    @Test
+    public void roundTrip_keepsSmallMessagesRaw() throws Exception {
+        OkRxWebSocketCompressor compressor = compressor(256, null);
+        ByteString message = ByteString.encodeUtf8("tiny");
+
+        ByteString frame = compressor.compress(message);
+
+        assertEquals(message.size() + 1, frame.size());
+        assertEquals(message, compressor.decompress(frame));
+    }
+
+    @Test
+    public void roundTrip_withDictionary() throws Exception {
+        OkRxWebSocketCompressor compressor = compressor(0, DICTIONARY);
+        ByteString message = ByteString.encodeUtf8("{\"type\":\"quote\",\"symbol\":\"AAPL\",\"price\":123.4}");
+
+        assertEquals(message, compressor.decompress(compressor.compress(message)));
+    }
+
+    @Test
+    public void roundTrip_ofEmptyMessage() throws Exception {
+        OkRxWebSocketCompressor compressor = compressor(0, null);
+
+        assertEquals(ByteString.EMPTY, compressor.decompress(compressor.compress(ByteString.EMPTY)));
+    }
+
+    @Test
+    public void roundTrip_reusesTheCompressor() throws Exception {
+        OkRxWebSocketCompressor sender = new OkRxWebSocketCompressor(new OkRxWebSocketCompression.Builder()
+                .minSize(0).level(Deflater.BEST_COMPRESSION).build());
+        OkRxWebSocketCompressor receiver = compressor(0, null);
+        for (int i = 0; i < 10; i++) {
+            ByteString message = ByteString.encodeUtf8("message " + i + " " + repetitiveMessage().utf8());
+            assertEquals(message, receiver.decompress(sender.compress(message)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decompress_rejectsEmptyFrame() throws Exception {
+        compressor(0, null).decompress(ByteString.EMPTY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decompress_rejectsUnknownFlag() throws Exception {
+        compressor(0, null).decompress(ByteString.encodeUtf8("plain"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decompress_rejectsTruncatedPayload() throws Exception {
+        OkRxWebSocketCompressor compressor = compressor(32, null);
+        ByteString frame = compressor.compress(repetitiveMessage());
+
+        compressor.decompress(frame.substring(0, frame.size() / 2));
+    }
+
+    @Test
+    public void decompress_rejectsFramesInflatingBeyondTheLimit() throws Exception {
+        OkRxWebSocketCompressor sender = compressor(0, null);
+        OkRxWebSocketCompressor receiver = new OkRxWebSocketCompressor(new OkRxWebSocketCompression.Builder()
+                .maxInflatedSize(64 * 1024).build());
+        ByteString bomb = sender.compress(ByteString.of(new byte[4 * 1024 * 1024]));
+        assertTrue(bomb.size() < 8 * 1024);
+
+        try {
+            receiver.decompress(bomb);
+            fail("Expected the frame to be rejected");
+        } catch (IllegalArgumentException expected) {
+            // dropped by the socket
+        }
+        ByteString message = ByteString.of(new byte[64 * 1024]);
+        assertEquals(message, receiver.decompress(sender.compress(message)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxInflatedSize_mustBePositive() throws Exception {
+        new OkRxWebSocketCompression.Builder().maxInflatedSize(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decompress_rejectsFramesOfAnotherDictionary() throws Exception {
+        ByteString frame = compressor(0, DICTIONARY).compress(repetitiveMessage());
+
+        compressor(0, null).decompress(frame);
+    }
+}
@@ -0,0 +1,222 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import okio.ByteString;
+
+import static org.junit.Assert.*;
+
+public class OkRxWebSocketJournalTest {
+
+    private File directory;
+    private final List<OkRxWebSocketJournal> journals = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("outbox", "");
+        assertTrue(directory.delete());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (OkRxWebSocketJournal journal : journals) {
+            journal.close();
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private OkRxWebSocketJournal open(long segmentSize) throws IOException {
+        OkRxWebSocketJournal journal = new OkRxWebSocketJournal(directory, segmentSize);
+        journals.add(journal);
+        return journal;
+    }
+
+    private OkRxWebSocketJournal reopen(OkRxWebSocketJournal journal, long segmentSize) throws IOException {
+        journal.close();
+        journals.remove(journal);
+        return open(segmentSize);
+    }
+
+    private static List<Object> readAll(OkRxWebSocketJournal journal, long fromSequence) throws IOException {
+        final List<Object> messages = new ArrayList<>();
+        journal.read(fromSequence, new OkRxWebSocketJournal.RecordReader() {
+            @Override
+            public boolean onRecord(long sequence, Object message) {
+                messages.add(message);
+                return true;
+            }
+        });
+        return messages;
+    }
+
+    private File[] segments() {
+        return directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".seg");
+            }
+        });
+    }
+
+    @Test
+    public void append_read() throws Exception {
+        OkRxWebSocketJournal journal = open(1024);
+
+        assertEquals(1, journal.append("first"));
+        assertEquals(2, journal.append(ByteString.encodeUtf8("second")));
+        journal.sync();
+
+        List<Object> messages = readAll(journal, 1);
+        assertEquals(2, messages.size());
+        assertEquals("first", messages.get(0));
+        assertEquals(ByteString.encodeUtf8("second"), messages.get(1));
+        assertEquals(1, readAll(journal, 2).size());
+    }
+
+    @Test
+    public void reopen_keepsTheRecords() throws Exception {
+        OkRxWebSocketJournal journal = open(1024);
+        journal.append("first");
+        journal.append("second");
+        journal.sync();
+
+        journal = reopen(journal, 1024);
+
+        assertEquals(2, journal.getLastSequence());
+        assertEquals(0, journal.getAcknowledgedSequence());
+        assertEquals(3, journal.append("third"));
+        assertEquals(3, readAll(journal, 1).size());
+    }
+
+    @Test
+    public void recover_truncatesTornTail() throws Exception {
+        OkRxWebSocketJournal journal = open(1024);
+        journal.append("first");
+        journal.append("second");
+        journal.sync();
+        journal.close();
+        journals.remove(journal);
+        File segment = segments()[0];
+        long validLength = segment.length();
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            // a record torn by a crash: complete header, partial payload and no checksum
+            file.seek(validLength);
+            file.writeLong(3);
+            file.writeByte(0);
+            file.writeInt(100);
+            file.write("thi".getBytes());
+        } finally {
+            file.close();
+        }
+
+        journal = open(1024);
+
+        assertEquals(validLength, segment.length());
+        assertEquals(2, journal.getLastSequence());
+        assertEquals(3, journal.append("third"));
+        List<Object> messages = readAll(journal, 1);
+        assertEquals(3, messages.size());
+        assertEquals("third", messages.get(2));
+    }
+
+    @Test
+    public void recover_truncatesRecordWithWrongChecksum() throws Exception {
+        OkRxWebSocketJournal journal = open(1024);
+        journal.append("first");
+        journal.append("second");
+        journal.sync();
+        journal.close();
+        journals.remove(journal);
+        File segment = segments()[0];
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            file.seek(file.length() - 1);
+            int checksumByte = file.readByte();
+            file.seek(file.length() - 1);
+            file.writeByte(checksumByte ^ 0xFF);
+        } finally {
+            file.close();
+        }
+
+        journal = open(1024);
+
+        assertEquals(1, journal.getLastSequence());
+        assertEquals(1, readAll(journal, 1).size());
+    }
+
+    @Test
+    public void recover_dropsSegmentsAfterTornRecord() throws Exception {
+        OkRxWebSocketJournal journal = open(1);
+        journal.append("first");
+        journal.append("second");
+        journal.append("third");
+        journal.sync();
+        journal.close();
+        journals.remove(journal);
+        assertEquals(3, segments().length);
+        File firstSegment = new File(directory, String.format("%020d.seg", 1));
+        RandomAccessFile file = new RandomAccessFile(firstSegment, "rw");
+        try {
+            file.setLength(file.length() - 2);
+        } finally {
+            file.close();
+        }
+
+        journal = open(1);
+
+        assertEquals(0, journal.getLastSequence());
+        assertEquals(1, segments().length);
+        assertTrue(readAll(journal, 1).isEmpty());
+    }
+
+    @Test
+    public void acknowledge_persistsCheckpointAndDeletesSegments() throws Exception {
+        OkRxWebSocketJournal journal = open(1);
+        journal.append("first");
+        journal.append("second");
+        journal.append("third");
+        journal.sync();
+
+        journal.acknowledge(2);
+
+        assertEquals(1, segments().length);
+        journal = reopen(journal, 1);
+        assertEquals(2, journal.getAcknowledgedSequence());
+        List<Object> messages = readAll(journal, journal.getAcknowledgedSequence() + 1);
+        assertEquals(1, messages.size());
+        assertEquals("third", messages.get(0));
+    }
+
+    @Test
+    public void acknowledge_isBoundedByTheLastRecord() throws Exception {
+        OkRxWebSocketJournal journal = open(1024);
+        journal.append("first");
+
+        journal.acknowledge(10);
+
+        assertEquals(1, journal.getAcknowledgedSequence());
+        assertEquals(2, journal.append("second"));
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsDirectoryInUse() throws Exception {
+        open(1024);
+        open(1024);
+    }
+}
@@ -0,0 +1,157 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import org.junit.Test;
+
+import static com.damianogiusti.okrxwebsocket.websocket.OkRxWebSocketSequenceWindow.ACCEPTED;
+import static com.damianogiusti.okrxwebsocket.websocket.OkRxWebSocketSequenceWindow.ACCEPTED_AFTER_GAP;
+import static com.damianogiusti.okrxwebsocket.websocket.OkRxWebSocketSequenceWindow.DUPLICATE;
+import static com.damianogiusti.okrxwebsocket.websocket.OkRxWebSocketSequenceWindow.OUT_OF_WINDOW;
+import static org.junit.Assert.*;
+
+public class OkRxWebSocketSequenceWindowTest {
+
+    @Test
+    public void accept_inOrder() throws Exception {
+        OkRxWebSocketSequenceWindow window = new OkRxWebSocketSequenceWindow(64);
+
+        for (long sequence = 10; sequence < 200; sequence++) {
+            assertEquals(ACCEPTED, window.accept(sequence));
+        }
+        assertEquals(199, window.getContiguousSequence());
+    }
+
+    @Test
+    public void accept_rejectsDuplicates() throws Exception {
+        OkRxWebSocketSequenceWindow window = new OkRxWebSocketSequenceWindow(64);
+        window.accept(1);
+        window.accept(2);
+        window.accept(3);
+
+        assertEquals(DUPLICATE, window.accept(3));
+        assertEquals(DUPLICATE, window.accept(1));
+    }
+
+    @Test
+    public void accept_reportsGap() throws Exception {
+        OkRxWebSocketSequenceWindow window = new OkRxWebSocketSequenceWindow(64);
+        window.accept(1);
+        window.accept(2);
+
+        assertEquals(ACCEPTED_AFTER_GAP, window.accept(6));
+        assertEquals(3, window.getGapStart());
+    }
+
+    @Test
+    public void accept_fillsGapOutOfOrder() throws Exception {
+        OkRxWebSocketSequenceWindow window = new OkRxWebSocketSequenceWindow(64);
+        window.accept(1);
+        window.accept(4);
+
+        assertEquals(ACCEPTED, window.accept(3));
+        assertEquals(ACCEPTED, window.accept(2));
+        assertEquals(DUPLICATE, window.accept(2));
+    }
+
+    @Test
+    public void accept_rejectsSequencesOlderThanTheWindow() throws Exception {
+        OkRxWebSocketSequenceWindow window = new OkRxWebSocketSequenceWindow(64);
+        window.accept(1);
+        window.accept(100);
+
+        assertEquals(OUT_OF_WINDOW, window.accept(2));
+        assertEquals(ACCEPTED, window.accept(90));
+    }
+
+    @Test
+    public void accept_forgetsSequencesSkippedByTheWindow() throws Exception {
+        OkRxWebSocketSequenceWindow window = new OkRxWebSocketSequenceWindow(64);
+        window.accept(1);
+        window.accept(64);
+
+        // the bit of 64 is the same as the one of 0, which was never received
+        assertEquals(ACCEPTED_AFTER_GAP, window.accept(128 + 10));
+        assertEquals(ACCEPTED, window.accept(128));
+        assertEquals(DUPLICATE, window.accept(138));
+    }
+
+    @Test
+    public void size_isRoundedUpToPowerOfTwo() throws Exception {
+        OkRxWebSocketSequenceWindow window = new OkRxWebSocketSequenceWindow(100);
+        window.accept(1);
+        window.accept(128);
+
+        assertEquals(ACCEPTED, window.accept(2));
+        window.accept(129);
+        assertEquals(OUT_OF_WINDOW, window.accept(1));
+    }
+
+    @Test
+    public void contiguousSequence_stopsAtGap() throws Exception {
+        OkRxWebSocketSequenceWindow window = new OkRxWebSocketSequenceWindow(64);
+        window.accept(1);
+        window.accept(2);
+        window.accept(4);
+        window.accept(5);
+
+        assertEquals(2, window.getContiguousSequence());
+
+        window.accept(3);
+
+        assertEquals(5, window.getContiguousSequence());
+    }
+
+    @Test
+    public void contiguousSequence_givesUpGapsOutOfTheWindow() throws Exception {
+        OkRxWebSocketSequenceWindow window = new OkRxWebSocketSequenceWindow(64);
+        window.accept(1);
+        window.accept(200);
+
+        assertEquals(200 - 64, window.getContiguousSequence());
+
+        for (long sequence = 137; sequence < 200; sequence++) {
+            window.accept(sequence);
+        }
+
+        assertEquals(200, window.getContiguousSequence());
+    }
+
+    @Test
+    public void reset_startsFromTheGivenSequence() throws Exception {
+        OkRxWebSocketSequenceWindow window = new OkRxWebSocketSequenceWindow(64);
+
+        window.reset(41);
+
+        assertEquals(41, window.getContiguousSequence());
+        assertEquals(DUPLICATE, window.accept(41));
+        assertEquals(ACCEPTED_AFTER_GAP, window.accept(43));
+        assertEquals(42, window.getGapStart());
+        assertEquals(41, window.getContiguousSequence());
+    }
+
+    @Test
+    public void reset_considersOlderSequencesSeen() throws Exception {
+        OkRxWebSocketSequenceWindow window = new OkRxWebSocketSequenceWindow(64);
+
+        window.reset(100);
+
+        assertEquals(DUPLICATE, window.accept(99));
+        assertEquals(DUPLICATE, window.accept(100 - 63));
+        assertEquals(OUT_OF_WINDOW, window.accept(100 - 64));
+        assertEquals(ACCEPTED, window.accept(101));
+        assertEquals(DUPLICATE, window.accept(50));
+        assertEquals(101, window.getContiguousSequence());
+    }
+
+    @Test
+    public void reset_forgetsSequencesAboveTheGivenOne() throws Exception {
+        OkRxWebSocketSequenceWindow window = new OkRxWebSocketSequenceWindow(64);
+        window.accept(1);
+        window.accept(2);
+        window.accept(3);
+
+        window.reset(1);
+
+        assertEquals(ACCEPTED, window.accept(2));
+        assertEquals(2, window.getContiguousSequence());
+    }
+}
@@ -0,0 +1,205 @@
+package com.damianogiusti.okrxwebsocket.websocket;
+
+import com.damianogiusti.okrxwebsocket.log.OkRxWebSocketLogger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import okio.ByteString;
+import okio.ForwardingSink;
+import okio.Sink;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+
+import static org.junit.Assert.*;
+
+public class OkRxWebSocketStreamChunksTest {
+
+    private final Map<Long, Buffer> sinks = new HashMap<>();
+    private final TestScheduler scheduler = new TestScheduler();
+    private TestSubscriber<Long> completedStreams;
+    private OkRxWebSocketStreamReassembler reassembler;
+
+    @Before
+    public void setUp() throws Exception {
+        completedStreams = TestSubscriber.create();
+        reassembler = new OkRxWebSocketStreamReassembler(new OkRxWebSocketStreamSinkFactory() {
+            @Override
+            public Sink create(long streamId) throws IOException {
+                Buffer sink = new Buffer();
+                sinks.put(streamId, sink);
+                return sink;
+            }
+        }, completedStreams, scheduler, new OkRxWebSocketLogger(false));
+    }
+
+    private static ByteString payload(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) i;
+        }
+        return ByteString.of(bytes);
+    }
+
+    private static List<ByteString> chunks(ByteString payload, long streamId, int chunkSize) {
+        return OkRxWebSocketStreamChunks.chunks(new Buffer().write(payload), streamId, chunkSize)
+                .toList().toBlocking().single();
+    }
+
+    @Test
+    public void chunks_splitsThePayload() throws Exception {
+        List<ByteString> frames = chunks(payload(2500), 7, 1000);
+
+        assertEquals(3, frames.size());
+        assertEquals(OkRxWebSocketStreamChunks.HEADER_SIZE + 1000, frames.get(0).size());
+        assertEquals(OkRxWebSocketStreamChunks.HEADER_SIZE + 500, frames.get(2).size());
+        for (ByteString frame : frames) {
+            assertTrue(OkRxWebSocketStreamChunks.isChunk(frame));
+        }
+    }
+
+    @Test
+    public void chunks_endsWithEmptyLastChunkWhenPayloadFillsTheChunks() throws Exception {
+        List<ByteString> frames = chunks(payload(2000), 7, 1000);
+
+        assertEquals(3, frames.size());
+        assertEquals(OkRxWebSocketStreamChunks.HEADER_SIZE, frames.get(2).size());
+    }
+
+    @Test
+    public void chunks_readsTheSourceOnlyWhenRequested() throws Exception {
+        Buffer source = new Buffer().write(payload(2500));
+        TestSubscriber<ByteString> subscriber = TestSubscriber.create(1);
+
+        OkRxWebSocketStreamChunks.chunks(source, 7, 1000).subscribe(subscriber);
+
+        subscriber.assertValueCount(1);
+        assertEquals(1500, source.size());
+    }
+
+    @Test
+    public void isChunk_rejectsOtherFrames() throws Exception {
+        assertFalse(OkRxWebSocketStreamChunks.isChunk(ByteString.EMPTY));
+        assertFalse(OkRxWebSocketStreamChunks.isChunk(payload(100)));
+    }
+
+    @Test
+    public void reassembler_writesTheStreamIntoItsSink() throws Exception {
+        ByteString payload = payload(2500);
+
+        for (ByteString frame : chunks(payload, 7, 1000)) {
+            assertTrue(reassembler.onFrame(frame));
+        }
+
+        completedStreams.assertValue(7L);
+        assertEquals(payload, sinks.get(7L).readByteString());
+    }
+
+    @Test
+    public void reassembler_interleavesStreams() throws Exception {
+        ByteString first = payload(1500);
+        ByteString second = payload(300);
+        List<ByteString> firstFrames = chunks(first, 1, 1000);
+        List<ByteString> secondFrames = chunks(second, 2, 1000);
+
+        reassembler.onFrame(firstFrames.get(0));
+        reassembler.onFrame(secondFrames.get(0));
+        reassembler.onFrame(firstFrames.get(1));
+
+        completedStreams.assertValues(2L, 1L);
+        assertEquals(first, sinks.get(1L).readByteString());
+        assertEquals(second, sinks.get(2L).readByteString());
+    }
+
+    @Test
+    public void reassembler_ignoresOtherFrames() throws Exception {
+        assertFalse(reassembler.onFrame(payload(100)));
+        assertTrue(sinks.isEmpty());
+    }
+
+    @Test
+    public void reassembler_discardsStreamMissingAChunk() throws Exception {
+        List<ByteString> frames = chunks(payload(2500), 7, 1000);
+
+        reassembler.onFrame(frames.get(0));
+        reassembler.onFrame(frames.get(2));
+
+        completedStreams.assertNoValues();
+    }
+
+    @Test
+    public void reassembler_skipsStreamMissingItsBeginning() throws Exception {
+        List<ByteString> frames = chunks(payload(2500), 7, 1000);
+
+        reassembler.onFrame(frames.get(1));
+        reassembler.onFrame(frames.get(2));
+
+        completedStreams.assertNoValues();
+        assertTrue(sinks.isEmpty());
+    }
+
+    @Test
+    public void reassembler_abortsIncompleteStreams() throws Exception {
+        final List<Long> closedSinks = new ArrayList<>();
+        reassembler = new OkRxWebSocketStreamReassembler(new OkRxWebSocketStreamSinkFactory() {
+            @Override
+            public Sink create(final long streamId) throws IOException {
+                return new ForwardingSink(new Buffer()) {
+                    @Override
+                    public void close() throws IOException {
+                        closedSinks.add(streamId);
+                        super.close();
+                    }
+                };
+            }
+        }, completedStreams, scheduler, new OkRxWebSocketLogger(false));
+        reassembler.onFrame(chunks(payload(2500), 7, 1000).get(0));
+
+        reassembler.abortAll();
+
+        assertEquals(1, closedSinks.size());
+        completedStreams.assertNoValues();
+    }
+
+    @Test
+    public void reassembler_evictsStreamsWhoseLastChunkWasLost() throws Exception {
+        List<ByteString> lost = chunks(payload(2500), 1, 1000);
+        List<ByteString> discarded = chunks(payload(3500), 2, 1000);
+        reassembler.onFrame(lost.get(0));
+        reassembler.onFrame(lost.get(1));
+        reassembler.onFrame(discarded.get(0));
+        reassembler.onFrame(discarded.get(2));
+        assertEquals(2, reassembler.openStreams());
+
+        scheduler.advanceTimeBy(OkRxWebSocketStreamReassembler.IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        reassembler.onFrame(chunks(payload(100), 3, 1000).get(0));
+
+        assertEquals(0, reassembler.openStreams());
+        completedStreams.assertValue(3L);
+        // a late chunk of an evicted stream is skipped, as its beginning is unknown
+        reassembler.onFrame(lost.get(2));
+        completedStreams.assertValue(3L);
+    }
+
+    @Test
+    public void reassembler_boundsTheOpenStreams() throws Exception {
+        for (long streamId = 0; streamId <= OkRxWebSocketStreamReassembler.MAX_OPEN_STREAMS; streamId++) {
+            reassembler.onFrame(chunks(payload(1500), streamId, 1000).get(0));
+        }
+
+        assertEquals(OkRxWebSocketStreamReassembler.MAX_OPEN_STREAMS, reassembler.openStreams());
+        // the least recently active stream was evicted
+        reassembler.onFrame(chunks(payload(1500), 0, 1000).get(1));
+        completedStreams.assertNoValues();
+        reassembler.onFrame(chunks(payload(1500), 1, 1000).get(1));
+        completedStreams.assertValue(1L);
+    }
+}